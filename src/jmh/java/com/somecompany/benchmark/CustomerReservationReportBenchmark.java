@@ -0,0 +1,51 @@
+package com.somecompany.benchmark;
+
+import com.somecompany.constant.RestaurantConstant;
+import com.somecompany.model.CustomerReservationReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmarks of each type of customer reservation report, generated without the report cache.<br/>
+ * Run with <code>-prof gc</code> to also measure the allocation rate of each report.
+ *
+ * @author patrick
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CustomerReservationReportBenchmark {
+
+    @Param({RestaurantConstant.CUSTOMER_RESERVATION_BASIC_REPORT, RestaurantConstant.CUSTOMER_RESERVATION_ADVANCED_REPORT,
+            RestaurantConstant.CUSTOMER_RESERVATION_VIP_ADVANCED_REPORT})
+    public String reportName;
+
+    private final String windowStartDateStr = ReservationGenerator.WINDOW_START_DATE.toString();
+
+    private final String windowEndDateStr = ReservationGenerator.WINDOW_END_DATE.toString();
+
+    @Benchmark
+    public List<CustomerReservationReport> reportWindow(RestaurantState state) throws IOException {
+        return state.service.getCustomerReservationReport(reportName, windowStartDateStr, windowEndDateStr);
+    }
+
+    @Benchmark
+    public List<CustomerReservationReport> reportAll(RestaurantState state) throws IOException {
+        return state.service.getCustomerReservationReport(reportName, null, null);
+    }
+}
@@ -0,0 +1,90 @@
+package com.somecompany.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Generator of synthetic reservation datasources for benchmarking.<br/>
+ * The output only depends on its parameters, so a generated file is kept in the temporary directory and reused by
+ * later runs with the same parameters.
+ *
+ * @author patrick
+ */
+public class ReservationGenerator {
+
+    // First scheduled date of the generated reservations
+    public static final LocalDate FIRST_DATE = LocalDate.of(2018, 1, 1);
+
+    // A 90 day window inside the generated dates, starting mid-month
+    public static final LocalDate WINDOW_START_DATE = FIRST_DATE.plusDays(400);
+
+    public static final LocalDate WINDOW_END_DATE = FIRST_DATE.plusDays(489);
+
+    private static final long SEED = 20201126L;
+
+    private ReservationGenerator() {
+    }
+
+    /**
+     * Get a datasource file of synthetic reservations, generating it if it does not exist yet.
+     *
+     * @param numOfReservation
+     * @param numOfGuest       The number of distinct guests the reservations are spread over
+     * @param numOfDay         The number of days from {@link #FIRST_DATE} the reservations are scheduled over
+     * @return The path of the JSON datasource
+     * @throws IOException
+     */
+    public static Path getDataSource(int numOfReservation, int numOfGuest, int numOfDay) throws IOException {
+        Path path = Paths.get(System.getProperty("java.io.tmpdir"),
+                "reservations-" + numOfReservation + "-" + numOfGuest + "-" + numOfDay + ".json");
+
+        if (Files.exists(path)) {
+            return path;
+        }
+
+        // Generate next to the target and move into place, so an interrupted run never leaves a partial file
+        Path tempPath = Files.createTempFile(path.getParent(), "reservations-", ".tmp");
+
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8), 1 << 16)) {
+            write(writer, numOfReservation, numOfGuest, numOfDay);
+        }
+
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return path;
+    }
+
+    private static void write(Writer writer, int numOfReservation, int numOfGuest, int numOfDay) throws IOException {
+        Random random = new Random(SEED);
+
+        writer.write("[\n");
+
+        for (int i = 0; i < numOfReservation; i++) {
+            int guestId = 1000 + random.nextInt(numOfGuest);
+            LocalDate scheduledDate = FIRST_DATE.plusDays(random.nextInt(numOfDay));
+
+            // Spend between 10.00 and 509.99
+            int spendCents = 1_000 + random.nextInt(50_000);
+
+            if (i > 0) {
+                writer.write(",\n");
+            }
+
+            writer.write("  {\"reservation_id\": \"" + String.format("%024x", i)
+                    + "\", \"party_size\": " + (1 + random.nextInt(12))
+                    + ", \"scheduled_date\": \"" + scheduledDate
+                    + "\", \"total_spend\": " + spendCents / 100 + "." + String.format("%02d", spendCents % 100)
+                    + ", \"guest\": {\"id\": \"" + guestId + "\", \"name\": \"Guest " + guestId + "\"}}");
+        }
+
+        writer.write("\n]\n");
+    }
+}
@@ -0,0 +1,86 @@
+package com.somecompany.benchmark;
+
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Reservation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of each stage of the report pipeline: datasource parsing, snapshot reading, reload, date filtering and
+ * customer aggregation.<br/>
+ * Run with <code>-prof gc</code> to also measure the allocation rate of each stage.
+ *
+ * @author patrick
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RestaurantBenchmark {
+
+    private final String windowStartDateStr = ReservationGenerator.WINDOW_START_DATE.toString();
+
+    private final String windowEndDateStr = ReservationGenerator.WINDOW_END_DATE.toString();
+
+    @Benchmark
+    public List<Reservation> parseDataSource(RestaurantState state) throws IOException {
+        List<Reservation> reservationList = new ArrayList<>();
+
+        try (InputStream inputStream = state.reservationDataSource.open()) {
+            state.reservationReader.read(inputStream, reservationList::add);
+        }
+
+        return reservationList;
+    }
+
+    @Benchmark
+    public Optional<List<Reservation>> readSnapshot(RestaurantState state) {
+        // The snapshot is written when the application loads the datasource
+        return state.snapshotStore.read();
+    }
+
+    @Benchmark
+    public long reload(RestaurantState state) throws IOException {
+        state.repository.reload();
+
+        return state.repository.count();
+    }
+
+    @Benchmark
+    public List<Reservation> filterWindow(RestaurantState state) throws IOException {
+        return state.service.getReservationsByScheduledDate(windowStartDateStr, windowEndDateStr);
+    }
+
+    @Benchmark
+    public List<Reservation> filterAll(RestaurantState state) throws IOException {
+        return state.service.getReservationsByScheduledDate(null, null);
+    }
+
+    @Benchmark
+    public Map<String, CustomerStatistics> aggregateWindow(RestaurantState state) {
+        return state.repository.findCustomerStatistics(ReservationGenerator.WINDOW_START_DATE,
+                ReservationGenerator.WINDOW_END_DATE);
+    }
+
+    @Benchmark
+    public Map<String, CustomerStatistics> aggregateAll(RestaurantState state) {
+        return state.repository.findCustomerStatistics(null, null);
+    }
+}
@@ -0,0 +1,80 @@
+package com.somecompany.benchmark;
+
+import com.somecompany.SampleApplication;
+import com.somecompany.repository.ReservationDataSource;
+import com.somecompany.repository.ReservationReader;
+import com.somecompany.repository.ReservationRepository;
+import com.somecompany.repository.ReservationSnapshotStore;
+import com.somecompany.service.RestaurantService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Benchmark state holding a running application loaded with a synthetic datasource.<br/>
+ * The report cache is disabled, so every invocation measures the actual report generation.
+ *
+ * @author patrick
+ */
+@State(Scope.Benchmark)
+public class RestaurantState {
+
+    @Param({"10000", "1000000"})
+    public int numOfReservation;
+
+    @Param({"1000"})
+    public int numOfGuest;
+
+    // Three years of reservations
+    @Param({"1096"})
+    public int numOfDay;
+
+    @Param({"objects", "columnar"})
+    public String storage;
+
+    public ConfigurableApplicationContext context;
+
+    public ReservationRepository repository;
+
+    public RestaurantService service;
+
+    public ReservationDataSource reservationDataSource;
+
+    public ReservationReader reservationReader;
+
+    public ReservationSnapshotStore snapshotStore;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path dataSource = ReservationGenerator.getDataSource(numOfReservation, numOfGuest, numOfDay);
+
+        // A snapshot directory of the trial's own, so each trial starts without a snapshot
+        Path snapshotDirectory = Files.createTempDirectory("restaurant-benchmark-snapshots");
+
+        // Passed as arguments, which take precedence over application.yml
+        context = new SpringApplicationBuilder(SampleApplication.class)
+                .run("--server.port=0", "--dataSource=file:" + dataSource, "--report.cache.enabled=false",
+                        "--reservation.snapshot.directory=" + snapshotDirectory, "--reservation.storage=" + storage,
+                        "--reservation.log.enabled=false");
+
+        repository = context.getBean(ReservationRepository.class);
+        service = context.getBean(RestaurantService.class);
+        reservationDataSource = context.getBean(ReservationDataSource.class);
+        reservationReader = context.getBean(ReservationReader.class);
+        snapshotStore = context.getBean(ReservationSnapshotStore.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
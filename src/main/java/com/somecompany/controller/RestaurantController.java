@@ -1,26 +1,51 @@
 package com.somecompany.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.somecompany.error.ApiError;
 import com.somecompany.model.CustomerReservationReport;
+import com.somecompany.model.Reservation;
+import com.somecompany.model.ReservationImportProgress;
+import com.somecompany.service.ReportExecutor;
+import com.somecompany.service.ReservationImporter;
 import com.somecompany.service.RestaurantService;
+import com.somecompany.service.SerializedReport;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Pattern;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
 
 /**
  * Endpoints for API calls.
@@ -36,30 +61,335 @@ public class RestaurantController {
     @Autowired
     private RestaurantService restaurantService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ReportExecutor reportExecutor;
+
+    @Autowired
+    private ReservationImporter reservationImporter;
+
+    @Value("${report.cache.serialized-responses:true}")
+    private boolean serializedResponses;
+
+    // Time allowed for an asynchronous report, the other asynchronous requests being left to stream for as long as
+    // they take
+    @Value("${report.async.timeout:30s}")
+    private Duration asyncReportTimeout;
+
+    @PostMapping(consumes = "application/json", produces = "application/json")
+    @ApiOperation(value = "Add a reservation.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Successfully added reservation.", response = Reservation.class)})
+    /**
+     * Endpoint for adding a reservation, which is persisted before the response is sent.
+     *
+     * @param reservation
+     * @return A ResponseEntity where the content is the added reservation
+     */
+    public ResponseEntity<Object> addReservation(@RequestBody Reservation reservation) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(restaurantService.addReservations(Collections.singletonList(reservation)).get(0));
+        } catch (Exception e) {
+            return getErrorResponse(e);
+        }
+    }
+
+    @PostMapping(path = "/batch", consumes = "application/json", produces = "application/json")
+    @ApiOperation(value = "Add a batch of reservations, all or none of which are added.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Successfully added reservations.", responseContainer = "List", response = Reservation.class)})
+    /**
+     * Endpoint for adding a batch of reservations, which are persisted together before the response is sent.
+     *
+     * @param reservationList
+     * @return A ResponseEntity where the content is the list of added reservations
+     */
+    public ResponseEntity<Object> addReservations(@RequestBody List<Reservation> reservationList) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(restaurantService.addReservations(reservationList));
+        } catch (Exception e) {
+            return getErrorResponse(e);
+        }
+    }
+
+    @PostMapping(path = "/bulk", consumes = "application/x-ndjson", produces = "application/x-ndjson")
+    @ApiOperation(value = "Import reservations in bulk from newline-delimited JSON, one reservation per line, reporting the progress as newline-delimited JSON.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully imported reservations, skipping the lines reported in errors.", response = ReservationImportProgress.class)})
+    /**
+     * Endpoint for importing reservations in bulk from newline-delimited JSON.<br/>
+     * The body is streamed through the importer, which adds the reservations in large batches. A progress line is
+     * written after each batch, followed by a final one marked complete. Lines which cannot be added are reported by
+     * line number in the errors of the next progress line, and skipped.
+     *
+     * @param inputStream
+     * @return A ResponseEntity where the content is written one progress line at a time
+     */
+    public ResponseEntity<StreamingResponseBody> importReservations(InputStream inputStream) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> {
+                    try {
+                        reservationImporter.importReservations(inputStream,
+                                progress -> writeProgress(progress, outputStream));
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
     @GetMapping(path = "/report", produces = "application/json")
-    @ApiOperation(value = "Get a report showing each customer's total restaurant visits and the respective total spending within a time period.")
+    @ApiOperation(value = "Get a report showing each customer's total restaurant visits and the respective total spending within a time period, or only the top customers by either.")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Successfully retrieved customer report.", responseContainer = "List", response = CustomerReservationReport.class)})
     /**
      * Endpoint for getting a report showing each customer's total restaurant visits and the respective total spending
-     * within a time period.
+     * within a time period.<br/>
+     * With top, only the top customers by orderBy are reported, highest first.
      *
      * @param startDate
      * @param endDate
+     * @param top       Number of top customers to report, or null for every customer sorted by name
+     * @param orderBy   total_spend or num_of_visit, the field the top customers are selected by
      * @return A ResponseEntity where the content is a list of report of each customer's total restaurant visits and the
      *         respective total spending within a time period
      */
     public ResponseEntity<Object> getCustomerReservationReport(
             @RequestParam(required = true) @NotEmpty(message = "Report name is required") String reportName,
             @RequestParam(required = false) @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$", message = "Start date must have the pattern 'YYYY-MM-DD'") String startDate,
-            @RequestParam(required = false) @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$", message = "End date must have the pattern 'YYYY-MM-DD'") String endDate) {
+            @RequestParam(required = false) @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$", message = "End date must have the pattern 'YYYY-MM-DD'") String endDate,
+            @RequestParam(required = false) @Min(value = 1, message = "Top must be at least 1") Integer top,
+            @RequestParam(required = false, defaultValue = "total_spend") @Pattern(regexp = "^(total_spend|num_of_visit)$", message = "Order by must be 'total_spend' or 'num_of_visit'") String orderBy) {
+        return getCustomerReservationReportResponse(reportName, startDate, endDate, top, orderBy);
+    }
+
+    @GetMapping(path = "/report/async", produces = "application/json")
+    @ApiOperation(value = "Get a report showing each customer's total restaurant visits and the respective total spending within a time period, generated off the request thread on a bounded pool.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully retrieved customer report.", responseContainer = "List", response = CustomerReservationReport.class),
+            @ApiResponse(code = 503, message = "Too many reports are being generated, retry later.")})
+    /**
+     * Endpoint for getting a report showing each customer's total restaurant visits and the respective total spending
+     * within a time period, asynchronously.<br/>
+     * The report is generated on the report pool and the request thread is released meanwhile. When the pool and its
+     * queue are full the request is answered with 503 Service Unavailable straight away, as it is when the report
+     * takes longer than the async report timeout.
+     *
+     * @param startDate
+     * @param endDate
+     * @param top       Number of top customers to report, or null for every customer sorted by name
+     * @param orderBy   total_spend or num_of_visit, the field the top customers are selected by
+     * @return A deferred ResponseEntity where the content is a list of report of each customer's total restaurant
+     *         visits and the respective total spending within a time period
+     */
+    public DeferredResult<ResponseEntity<Object>> getCustomerReservationReportAsync(
+            @RequestParam(required = true) @NotEmpty(message = "Report name is required") String reportName,
+            @RequestParam(required = false) @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$", message = "Start date must have the pattern 'YYYY-MM-DD'") String startDate,
+            @RequestParam(required = false) @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$", message = "End date must have the pattern 'YYYY-MM-DD'") String endDate,
+            @RequestParam(required = false) @Min(value = 1, message = "Top must be at least 1") Integer top,
+            @RequestParam(required = false, defaultValue = "total_spend") @Pattern(regexp = "^(total_spend|num_of_visit)$", message = "Order by must be 'total_spend' or 'num_of_visit'") String orderBy) {
+        DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>(asyncReportTimeout.toMillis());
+
+        // A rejection is thrown from here and answered with 503 by the exception handler, as is a timeout
+        reportExecutor.submit(() -> getCustomerReservationReportResponse(reportName, startDate, endDate, top, orderBy))
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        result.setErrorResult(e instanceof CompletionException ? e.getCause() : e);
+                    } else {
+                        result.setResult(response);
+                    }
+                });
+
+        return result;
+    }
+
+    @GetMapping(path = "/report/stream", produces = {"application/json", "application/x-ndjson"})
+    @ApiOperation(value = "Stream a report showing each customer's total restaurant visits and the respective total spending within a time period, as a JSON array or newline-delimited JSON.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully streamed customer report.", responseContainer = "List", response = CustomerReservationReport.class)})
+    /**
+     * Endpoint for streaming a report showing each customer's total restaurant visits and the respective total
+     * spending within a time period.<br/>
+     * Rows are written as they are produced in name order, so the response starts before the whole report is built.
+     *
+     * @param reportName
+     * @param startDate
+     * @param endDate
+     * @param format     json for a JSON array, ndjson for one JSON object per line
+     * @param offset     Number of rows to skip
+     * @param limit      Maximum number of rows to write
+     * @return A ResponseEntity where the content is written row by row
+     */
+    public ResponseEntity<StreamingResponseBody> streamCustomerReservationReport(
+            @RequestParam(required = true) @NotEmpty(message = "Report name is required") String reportName,
+            @RequestParam(required = false) @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$", message = "Start date must have the pattern 'YYYY-MM-DD'") String startDate,
+            @RequestParam(required = false) @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$", message = "End date must have the pattern 'YYYY-MM-DD'") String endDate,
+            @RequestParam(required = false, defaultValue = "json") @Pattern(regexp = "^(json|ndjson)$", message = "Format must be 'json' or 'ndjson'") String format,
+            @RequestParam(required = false, defaultValue = "0") @Min(value = 0, message = "Offset must not be negative") long offset,
+            @RequestParam(required = false) @Min(value = 0, message = "Limit must not be negative") Long limit) {
         try {
+            Stream<CustomerReservationReport> reportStream = restaurantService
+                    .streamCustomerReservationReport(reportName, startDate, endDate).skip(offset);
+
+            if (limit != null) {
+                reportStream = reportStream.limit(limit);
+            }
+
+            boolean ndjson = format.equals("ndjson");
+            Stream<CustomerReservationReport> rows = reportStream;
+
+            return ResponseEntity.ok().contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                    .body(outputStream -> writeReportRows(rows, ndjson, outputStream));
+        } catch (Exception e) {
+            ResponseEntity<Object> errorResponse = getErrorResponse(e);
+
+            return ResponseEntity.status(errorResponse.getStatusCode()).contentType(MediaType.APPLICATION_JSON)
+                    .body(outputStream -> objectMapper.writeValue(outputStream, errorResponse.getBody()));
+        }
+    }
+
+    @PostMapping(path = "/report", consumes = "application/json", produces = "application/json")
+    @ApiOperation(value = "Get a report showing each customer's total restaurant visits and the respective total spending within a time period, over the JSON array of reservations in the request body.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully retrieved customer report.", responseContainer = "List", response = CustomerReservationReport.class)})
+    /**
+     * Endpoint for getting a report showing each customer's total restaurant visits and the respective total spending
+     * within a time period, over reservations uploaded in the request body instead of the datasource.<br/>
+     * The body is streamed, so exports of any size can be reported on.
+     *
+     * @param startDate
+     * @param endDate
+     * @param inputStream
+     * @return A ResponseEntity where the content is a list of report of each customer's total restaurant visits and the
+     *         respective total spending within a time period
+     */
+    public ResponseEntity<Object> getCustomerReservationReportOfUploadedReservations(
+            @RequestParam(required = true) @NotEmpty(message = "Report name is required") String reportName,
+            @RequestParam(required = false) @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$", message = "Start date must have the pattern 'YYYY-MM-DD'") String startDate,
+            @RequestParam(required = false) @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$", message = "End date must have the pattern 'YYYY-MM-DD'") String endDate,
+            InputStream inputStream) {
+        try {
+            return ResponseEntity
+                    .ok(restaurantService.getCustomerReservationReport(reportName, startDate, endDate, inputStream));
+        } catch (Exception e) {
+            return getErrorResponse(e);
+        }
+    }
+
+    /**
+     * Get a report, or a report of the top customers if top is given, from its cached JSON encoding when serialized
+     * responses are enabled.
+     *
+     * @param reportName
+     * @param startDate
+     * @param endDate
+     * @param top
+     * @param orderBy
+     * @return A ResponseEntity where the content is a list of report, or the error
+     */
+    private ResponseEntity<Object> getCustomerReservationReportResponse(String reportName, String startDate,
+                                                                        String endDate, Integer top, String orderBy) {
+        try {
+            if (top != null) {
+                return getTopCustomerReservationReport(reportName, startDate, endDate, top, orderBy);
+            }
+
+            if (serializedResponses) {
+                // Write the cached JSON encoding as-is, a matching If-None-Match is answered with 304 Not Modified
+                SerializedReport serializedReport = restaurantService
+                        .getSerializedCustomerReservationReport(reportName, startDate, endDate);
+
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(serializedReport.getEtag())
+                        .body(serializedReport.getBody());
+            }
+
             return ResponseEntity.ok(restaurantService.getCustomerReservationReport(reportName, startDate, endDate));
         } catch (Exception e) {
             return getErrorResponse(e);
         }
     }
 
+    /**
+     * Get a report of the top customers, from its cached JSON encoding when serialized responses are enabled.
+     *
+     * @param reportName
+     * @param startDate
+     * @param endDate
+     * @param top
+     * @param orderBy
+     * @return A ResponseEntity where the content is a list of report of the top customers
+     * @throws IOException
+     */
+    private ResponseEntity<Object> getTopCustomerReservationReport(String reportName, String startDate, String endDate,
+                                                                   int top, String orderBy) throws IOException {
+        if (serializedResponses) {
+            SerializedReport serializedReport = restaurantService
+                    .getSerializedTopCustomerReservationReport(reportName, startDate, endDate, top, orderBy);
+
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(serializedReport.getEtag())
+                    .body(serializedReport.getBody());
+        }
+
+        return ResponseEntity
+                .ok(restaurantService.getTopCustomerReservationReport(reportName, startDate, endDate, top, orderBy));
+    }
+
+    /**
+     * Write report rows one at a time, as a JSON array or as newline-delimited JSON.
+     *
+     * @param rows
+     * @param ndjson
+     * @param outputStream
+     * @throws IOException
+     */
+    private void writeReportRows(Stream<CustomerReservationReport> rows, boolean ndjson, OutputStream outputStream)
+            throws IOException {
+        // Leave flushing to the generator's buffer rather than flushing after every row
+        ObjectWriter rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.setRootValueSeparator(null);
+
+            if (!ndjson) {
+                generator.writeStartArray();
+            }
+
+            Iterator<CustomerReservationReport> iterator = rows.iterator();
+
+            while (iterator.hasNext()) {
+                rowWriter.writeValue(generator, iterator.next());
+
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+            }
+
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Write a progress line of a bulk import, and send it to the client at once.
+     *
+     * @param progress
+     * @param outputStream
+     */
+    private void writeProgress(ReservationImportProgress progress, OutputStream outputStream) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(progress));
+            outputStream.write('\n');
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Create error response from exception messages.
      *
@@ -1,6 +1,7 @@
 package com.somecompany.error;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -43,6 +44,21 @@ public class CustomGlobalExceptionHandler extends ResponseEntityExceptionHandler
         return new ResponseEntity<Object>(apiError, new HttpHeaders(), apiError.getStatus());
     }
 
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<ApiError> handleTaskRejectedException(TaskRejectedException exception,
+                                                                ServletWebRequest webRequest) {
+        String error = "Too many reports are being generated, please retry later";
+        ApiError apiError = new ApiError(HttpStatus.SERVICE_UNAVAILABLE, exception.getLocalizedMessage(), error);
+        log.warn("\n##################################################\n"
+                + "Rejected report on API call, error info:\n" + apiError
+                + "\n##################################################");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+
+        return new ResponseEntity<ApiError>(apiError, headers, apiError.getStatus());
+    }
+
     @ExceptionHandler(ConstraintViolationException.class)
     public ResponseEntity<ApiError> handleConstraintViolationException(ConstraintViolationException exception,
                                                                        ServletWebRequest webRequest) throws IOException {
@@ -0,0 +1,191 @@
+package com.somecompany.model;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mutable per-customer aggregate of reservation statistics.<br/>
+ * The total spend is accumulated as an unscaled long with the largest scale seen so far, which gives exactly the same
+ * value and scale as summing the <code>BigDecimal</code> spends, without allocating on every reservation.
+ *
+ * @author patrick
+ */
+@Getter
+public class CustomerStatistics {
+
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L,
+            10_000_000L, 100_000_000L, 1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+            10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L, 10_000_000_000_000_000L,
+            100_000_000_000_000_000L, 1_000_000_000_000_000_000L};
+
+    // Spend scale of a reservation without a total spend
+    public static final int NO_SPEND_SCALE = Integer.MIN_VALUE;
+
+    private final String guestId;
+
+    private final String name;
+
+    private int numOfVisit;
+
+    private long unscaledTotalSpend;
+
+    private int totalSpendScale;
+
+    private int maxPartySize;
+
+    public CustomerStatistics(String guestId, String name) {
+        this.guestId = guestId;
+        this.name = name;
+    }
+
+    /**
+     * Restore statistics from their values, e.g. as stored in a file.
+     *
+     * @param guestId
+     * @param name
+     * @param numOfVisit
+     * @param unscaledTotalSpend
+     * @param totalSpendScale
+     * @param maxPartySize
+     */
+    public CustomerStatistics(String guestId, String name, int numOfVisit, long unscaledTotalSpend,
+                              int totalSpendScale, int maxPartySize) {
+        this.guestId = guestId;
+        this.name = name;
+        this.numOfVisit = numOfVisit;
+        this.unscaledTotalSpend = unscaledTotalSpend;
+        this.totalSpendScale = totalSpendScale;
+        this.maxPartySize = maxPartySize;
+    }
+
+    /**
+     * Add a reservation of this customer to the statistics.
+     *
+     * @param reservation
+     */
+    public void add(Reservation reservation) {
+        BigDecimal spend = reservation.getTotal_spend();
+
+        if (spend == null) {
+            add(0, NO_SPEND_SCALE, reservation.getParty_size());
+        } else {
+            add(spend.unscaledValue().longValueExact(), spend.scale(), reservation.getParty_size());
+        }
+    }
+
+    /**
+     * Add a reservation of this customer to the statistics from its column values.
+     *
+     * @param unscaledSpend
+     * @param spendScale    The scale of the spend, or {@link #NO_SPEND_SCALE} if the reservation has no spend
+     * @param partySize
+     */
+    public void add(long unscaledSpend, int spendScale, int partySize) {
+        if (spendScale != NO_SPEND_SCALE) {
+            addTotalSpend(unscaledSpend, spendScale);
+        }
+
+        numOfVisit++;
+        maxPartySize = Math.max(maxPartySize, partySize);
+    }
+
+    /**
+     * Add the statistics of another set of reservations of this customer.
+     *
+     * @param other
+     */
+    public void merge(CustomerStatistics other) {
+        if (other.numOfVisit == 0) {
+            return;
+        }
+
+        addTotalSpend(other.unscaledTotalSpend, other.totalSpendScale);
+
+        numOfVisit += other.numOfVisit;
+        maxPartySize = Math.max(maxPartySize, other.maxPartySize);
+    }
+
+    /**
+     * Add a reservation to the statistics of its customer, creating them on the customer's first reservation.
+     *
+     * @param custStatisticsMap A map storing unique customers by guest id, with the value holding their statistics
+     * @param reservation
+     */
+    public static void addReservation(Map<String, CustomerStatistics> custStatisticsMap, Reservation reservation) {
+        Guest guest = reservation.getGuest();
+
+        // Single lookup per reservation
+        custStatisticsMap.computeIfAbsent(guest.getId(), guestId -> new CustomerStatistics(guestId, guest.getName()))
+                .add(reservation);
+    }
+
+    /**
+     * Merge an array of statistics indexed by customer ordinal into another, element by element.
+     *
+     * @param statistics The statistics merged into, taking over the other statistics of customers it lacks
+     * @param other
+     */
+    public static void mergeStatistics(CustomerStatistics[] statistics, CustomerStatistics[] other) {
+        for (int c = 0; c < statistics.length; c++) {
+            if (statistics[c] == null) {
+                statistics[c] = other[c];
+            } else if (other[c] != null) {
+                statistics[c].merge(other[c]);
+            }
+        }
+    }
+
+    /**
+     * Key statistics indexed by customer ordinal by their guest id.
+     *
+     * @param statistics The statistics of each customer, null for customers without a reservation
+     * @return A map storing unique customers by guest id, with the value holding their statistics
+     */
+    public static Map<String, CustomerStatistics> toStatisticsMap(CustomerStatistics[] statistics) {
+        Map<String, CustomerStatistics> custStatisticsMap = new HashMap<>();
+
+        for (CustomerStatistics customerStatistics : statistics) {
+            if (customerStatistics != null) {
+                custStatisticsMap.put(customerStatistics.getGuestId(), customerStatistics);
+            }
+        }
+
+        return custStatisticsMap;
+    }
+
+    public BigDecimal getTotalSpend() {
+        return BigDecimal.valueOf(unscaledTotalSpend, totalSpendScale);
+    }
+
+    /**
+     * Add an amount to the total spend, keeping the larger of the two scales as BigDecimal addition does.
+     *
+     * @param unscaled
+     * @param scale
+     */
+    private void addTotalSpend(long unscaled, int scale) {
+        if (numOfVisit == 0) {
+            // First amount keeps its own scale
+            unscaledTotalSpend = unscaled;
+            totalSpendScale = scale;
+        } else if (scale > totalSpendScale) {
+            unscaledTotalSpend = Math.addExact(
+                    Math.multiplyExact(unscaledTotalSpend, powerOfTen(scale - totalSpendScale)), unscaled);
+            totalSpendScale = scale;
+        } else {
+            unscaledTotalSpend = Math.addExact(unscaledTotalSpend,
+                    Math.multiplyExact(unscaled, powerOfTen(totalSpendScale - scale)));
+        }
+    }
+
+    private static long powerOfTen(int exponent) {
+        if (exponent >= POWERS_OF_TEN.length) {
+            throw new ArithmeticException("Total spend scale difference too large: " + exponent);
+        }
+
+        return POWERS_OF_TEN[exponent];
+    }
+}
@@ -1,8 +1,11 @@
 package com.somecompany.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Data;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 
 /**
  * Model class for a reservation.
@@ -10,6 +13,7 @@ import java.math.BigDecimal;
  * @author patrick
  */
 @Data
+@JsonDeserialize(using = ReservationDeserializer.class)
 public class Reservation {
 
     private String reservation_id;
@@ -18,7 +22,21 @@ public class Reservation {
 
     private String scheduled_date;
 
+    // The scheduled date as days since 1970-01-01, kept in sync with scheduled_date and never serialized
+    @JsonIgnore
+    private int scheduled_epoch_day;
+
     private BigDecimal total_spend;
 
     private Guest guest;
+
+    public void setScheduled_date(String scheduled_date) {
+        this.scheduled_date = scheduled_date;
+        this.scheduled_epoch_day = scheduled_date == null ? 0 : (int) LocalDate.parse(scheduled_date).toEpochDay();
+    }
+
+    public void setScheduled_epoch_day(int scheduled_epoch_day) {
+        this.scheduled_epoch_day = scheduled_epoch_day;
+        this.scheduled_date = LocalDate.ofEpochDay(scheduled_epoch_day).toString();
+    }
 }
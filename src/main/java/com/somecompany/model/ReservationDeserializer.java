@@ -0,0 +1,67 @@
+package com.somecompany.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Deserializer for a reservation, reading the fields straight off the token stream.<br/>
+ * The scheduled date is parsed into its epoch day here, once per record, instead of on every date filter.
+ *
+ * @author patrick
+ */
+public class ReservationDeserializer extends StdDeserializer<Reservation> {
+
+    private static final long serialVersionUID = 1L;
+
+    public ReservationDeserializer() {
+        super(Reservation.class);
+    }
+
+    @Override
+    public Reservation deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.currentToken();
+
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        } else if (token != JsonToken.FIELD_NAME) {
+            return (Reservation) context.handleUnexpectedToken(Reservation.class, parser);
+        }
+
+        Reservation reservation = new Reservation();
+
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (field) {
+                case "reservation_id":
+                    reservation.setReservation_id(_parseString(parser, context));
+                    break;
+                case "party_size":
+                    reservation.setParty_size(_parseIntPrimitive(parser, context));
+                    break;
+                case "scheduled_date":
+                    // Also sets the scheduled epoch day
+                    reservation.setScheduled_date(_parseString(parser, context));
+                    break;
+                case "total_spend":
+                    reservation.setTotal_spend(parser.currentToken() == JsonToken.VALUE_NULL
+                            ? null : context.readValue(parser, BigDecimal.class));
+                    break;
+                case "guest":
+                    reservation.setGuest(parser.currentToken() == JsonToken.VALUE_NULL
+                            ? null : context.readValue(parser, Guest.class));
+                    break;
+                default:
+                    handleUnknownProperty(parser, context, reservation, field);
+            }
+        }
+
+        return reservation;
+    }
+}
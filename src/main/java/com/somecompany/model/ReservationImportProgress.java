@@ -0,0 +1,46 @@
+package com.somecompany.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Model class for the progress of a bulk reservation import.<br/>
+ * The counts are running totals, while the errors are those of the lines read since the previous progress.
+ *
+ * @author patrick
+ */
+@Data
+public class ReservationImportProgress {
+
+    // Number of lines read
+    private long lines;
+
+    // Number of reservations added
+    private long accepted;
+
+    // Number of non-blank lines which could not be added
+    private long rejected;
+
+    private List<LineError> errors = new ArrayList<>();
+
+    // Whether the whole request body has been imported
+    private boolean complete;
+
+    /**
+     * Model class for a line which could not be added.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineError {
+
+        // Line number, starting at 1
+        private long line;
+
+        private String message;
+    }
+}
@@ -0,0 +1,282 @@
+package com.somecompany.repository;
+
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Reservation;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An immutable store made of a fully loaded store and the reservations written after it was loaded.<br/>
+ * The written reservations follow those of the loaded store in datasource order and are indexed on their own, in a
+ * few batches of decreasing size. Appending indexes the new reservations as a batch of their own, combined with the
+ * last batches only while those are no larger, so each written reservation is re-indexed a logarithmic number of
+ * times and a write never re-indexes every written reservation. The repository keeps the written reservations few by
+ * merging them into a new loaded store from time to time. Until then, a customer keeps the name they have in the
+ * loaded store, and a new customer is named after their earliest written reservation, as in the live statistics.
+ *
+ * @author patrick
+ */
+public class AppendedReservationStore implements ReservationStore {
+
+    @Getter
+    private final ReservationStore loadedStore;
+
+    // The written reservations in the order written, in batches of decreasing size
+    @Getter
+    private final List<ReservationSnapshot> appendedStores;
+
+    // The position in the reservations of the first reservation of each batch, then the size
+    private final int[] offsets;
+
+    @Getter
+    private final List<Reservation> reservations = new AbstractList<Reservation>() {
+
+        @Override
+        public Reservation get(int position) {
+            return position < offsets[0]
+                    ? loadedStore.getReservations().get(position) : getAppendedReservation(position);
+        }
+
+        @Override
+        public int size() {
+            return offsets[offsets.length - 1];
+        }
+
+        @Override
+        public Iterator<Reservation> iterator() {
+            return listIterator(0);
+        }
+
+        @Override
+        public ListIterator<Reservation> listIterator(int position) {
+            if (position < 0 || position > size()) {
+                throw new IndexOutOfBoundsException("Position " + position + " out of " + size());
+            }
+
+            return new AppendedIterator(position);
+        }
+    };
+
+    /**
+     * @param loadedStore    The fully loaded store
+     * @param appendedStores The written reservations in the order written, in batches of decreasing size
+     */
+    public AppendedReservationStore(ReservationStore loadedStore, List<ReservationSnapshot> appendedStores) {
+        this.loadedStore = loadedStore;
+        this.appendedStores = Collections.unmodifiableList(new ArrayList<>(appendedStores));
+        this.offsets = new int[appendedStores.size() + 1];
+
+        offsets[0] = loadedStore.size();
+
+        for (int index = 0; index < appendedStores.size(); index++) {
+            offsets[index + 1] = offsets[index] + appendedStores.get(index).size();
+        }
+    }
+
+    /**
+     * Create a store with more written reservations, indexing them along with the last batches no larger than them.
+     *
+     * @param reservationList The reservations written, in the order written
+     * @return The new store
+     */
+    public AppendedReservationStore append(List<Reservation> reservationList) {
+        if (reservationList.isEmpty()) {
+            return this;
+        }
+
+        List<ReservationSnapshot> stores = new ArrayList<>(appendedStores);
+        List<Reservation> batchList = new ArrayList<>(reservationList);
+
+        while (!stores.isEmpty() && stores.get(stores.size() - 1).size() <= batchList.size()) {
+            List<Reservation> combinedList = new ArrayList<>(stores.remove(stores.size() - 1).getReservations());
+            combinedList.addAll(batchList);
+            batchList = combinedList;
+        }
+
+        stores.add(new ReservationSnapshot(batchList, 0));
+
+        return new AppendedReservationStore(loadedStore, stores);
+    }
+
+    /**
+     * Create a store over a new loaded store which took in the first written reservations, with the written
+     * reservations after them. Only a batch holding reservations on both sides is indexed again.
+     *
+     * @param mergedStore The new loaded store
+     * @param mergedCount The number of written reservations it took in
+     * @return The new store, or the new loaded store if it took in every written reservation
+     */
+    public ReservationStore withLoadedStore(ReservationStore mergedStore, int mergedCount) {
+        List<ReservationSnapshot> stores = new ArrayList<>();
+        int mergedPosition = offsets[0] + mergedCount;
+
+        for (int index = 0; index < appendedStores.size(); index++) {
+            if (offsets[index] >= mergedPosition) {
+                stores.add(appendedStores.get(index));
+            } else if (offsets[index + 1] > mergedPosition) {
+                List<Reservation> batchList = appendedStores.get(index).getReservations();
+
+                stores.add(new ReservationSnapshot(new ArrayList<>(
+                        batchList.subList(mergedPosition - offsets[index], batchList.size())), 0));
+            }
+        }
+
+        return stores.isEmpty() ? mergedStore : new AppendedReservationStore(mergedStore, stores);
+    }
+
+    @Override
+    public List<Reservation> findByScheduledDate(LocalDate startDate, LocalDate endDate) {
+        List<Reservation> filteredList = new ArrayList<>(loadedStore.findByScheduledDate(startDate, endDate));
+
+        for (ReservationSnapshot appendedStore : appendedStores) {
+            filteredList.addAll(appendedStore.findByScheduledDate(startDate, endDate));
+        }
+
+        return filteredList;
+    }
+
+    @Override
+    public Map<String, CustomerStatistics> getCustomerStatistics(LocalDate startDate, LocalDate endDate,
+                                                                 ForkJoinPool pool, int parallelThreshold) {
+        // A new map of new statistics, which can take the written reservations
+        Map<String, CustomerStatistics> custStatisticsMap = loadedStore
+                .getCustomerStatistics(startDate, endDate, pool, parallelThreshold);
+
+        List<Reservation> appendedList = new ArrayList<>();
+        // The earliest written reservation of each customer missing from the loaded store, the first written of a day
+        Map<String, Reservation> earliestMap = new HashMap<>();
+
+        for (ReservationSnapshot appendedStore : appendedStores) {
+            for (Reservation reservation : appendedStore.findByScheduledDate(startDate, endDate)) {
+                appendedList.add(reservation);
+
+                if (!custStatisticsMap.containsKey(reservation.getGuest().getId())) {
+                    earliestMap.merge(reservation.getGuest().getId(), reservation, (earliest, later) ->
+                            later.getScheduled_epoch_day() < earliest.getScheduled_epoch_day() ? later : earliest);
+                }
+            }
+        }
+
+        for (Reservation earliest : earliestMap.values()) {
+            custStatisticsMap.put(earliest.getGuest().getId(),
+                    new CustomerStatistics(earliest.getGuest().getId(), earliest.getGuest().getName()));
+        }
+
+        for (Reservation reservation : appendedList) {
+            CustomerStatistics.addReservation(custStatisticsMap, reservation);
+        }
+
+        return custStatisticsMap;
+    }
+
+    @Override
+    public int size() {
+        return offsets[offsets.length - 1];
+    }
+
+    @Override
+    public long getLoadTimeMillis() {
+        return loadedStore.getLoadTimeMillis();
+    }
+
+    /**
+     * Get a written reservation by its position in the reservations.
+     *
+     * @param position A position after the loaded reservations
+     * @return The reservation
+     */
+    private Reservation getAppendedReservation(int position) {
+        if (position < offsets[0] || position >= size()) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of " + size());
+        }
+
+        // The last batch starting at or before the position, batches never being empty
+        int index = Arrays.binarySearch(offsets, position);
+        index = index >= 0 ? index : -index - 2;
+
+        return appendedStores.get(index).getReservations().get(position - offsets[index]);
+    }
+
+    /**
+     * A read-only iterator over the reservations, going through the iterator of the loaded reservations, so the loaded
+     * store is traversed its own way rather than one reservation at a time.
+     */
+    private class AppendedIterator implements ListIterator<Reservation> {
+
+        private final ListIterator<Reservation> loadedIterator;
+
+        private int position;
+
+        private AppendedIterator(int position) {
+            this.position = position;
+            this.loadedIterator = loadedStore.getReservations().listIterator(Math.min(position, offsets[0]));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < size();
+        }
+
+        @Override
+        public Reservation next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            int current = position++;
+
+            return current < offsets[0] ? loadedIterator.next() : getAppendedReservation(current);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return position > 0;
+        }
+
+        @Override
+        public Reservation previous() {
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+
+            return --position < offsets[0] ? loadedIterator.previous() : getAppendedReservation(position);
+        }
+
+        @Override
+        public int nextIndex() {
+            return position;
+        }
+
+        @Override
+        public int previousIndex() {
+            return position - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(Reservation reservation) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(Reservation reservation) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.somecompany.repository;
+
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Guest;
+import com.somecompany.model.Reservation;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * An immutable, fully loaded copy of the reservation datasource, held in primitive columns sorted by scheduled date.
+ * <br/>
+ * Guests are interned in a dictionary and referenced by ordinal, spends are kept as unscaled longs with their scale,
+ * and reservation ids are packed into a single byte array, so a reservation costs a few dozen bytes and a handful of
+ * large arrays instead of several objects. The date filter is a binary search over the sorted day column and the
+ * customer aggregation a single loop over a contiguous slice of the columns. Reservation objects are only created
+ * when they are returned.
+ *
+ * @author patrick
+ */
+public class ColumnarReservationStore implements ReservationStore {
+
+    // Marks a reservation without a guest in the guest column
+    static final int NO_GUEST = -1;
+
+    private final int size;
+
+    // Time taken to load the store, in milliseconds
+    @Getter
+    private final long loadTimeMillis;
+
+    // Distinct guests, each an id and name pair
+    private final Guest[] guests;
+
+    // For each guest, the ordinal of its guest id, shared by guests with the same id under another name
+    private final int[] customerOrdinals;
+
+    private final int customerCount;
+
+    // The columns, all sorted by scheduled date and then datasource position
+    private final int[] epochDays;
+    private final int[] partySizes;
+    private final int[] guestOrdinals;
+    private final long[] unscaledSpends;
+    private final int[] spendScales;
+
+    // Reservation ids as UTF-8, the id at index i spanning idOffsets[i] to idOffsets[i + 1]
+    private final byte[] idBytes;
+    private final int[] idOffsets;
+
+    private final BitSet nullScheduledDates;
+    private final BitSet nullReservationIds;
+
+    // Datasource position of the reservation at each sorted index, and the reverse
+    private final int[] sourcePositions;
+    private final int[] sortedIndexes;
+
+    @Getter
+    private final List<Reservation> reservations = new AbstractList<Reservation>() {
+
+        @Override
+        public Reservation get(int position) {
+            return toReservation(sortedIndexes[position]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    private ColumnarReservationStore(Builder builder, long loadTimeMillis) {
+        this.size = builder.size;
+        this.loadTimeMillis = loadTimeMillis;
+
+        GuestDictionary guestDictionary = builder.guestDictionary;
+
+        this.guests = new Guest[guestDictionary.getGuestCount()];
+        this.customerOrdinals = new int[guests.length];
+        this.customerCount = guestDictionary.getCustomerCount();
+
+        for (int guestOrdinal = 0; guestOrdinal < guests.length; guestOrdinal++) {
+            guests[guestOrdinal] = guestDictionary.getGuest(guestOrdinal);
+            customerOrdinals[guestOrdinal] = guestDictionary.getCustomerOrdinal(guestOrdinal);
+        }
+
+        // Sort (epoch day, position) pairs packed into a primitive long, so equal days keep datasource order
+        long[] keys = new long[size];
+
+        for (int position = 0; position < size; position++) {
+            keys[position] = ((long) builder.epochDays[position] << 32) | position;
+        }
+
+        Arrays.sort(keys);
+
+        this.epochDays = new int[size];
+        this.partySizes = new int[size];
+        this.guestOrdinals = new int[size];
+        this.unscaledSpends = new long[size];
+        this.spendScales = new int[size];
+        this.idOffsets = new int[size + 1];
+        this.nullScheduledDates = new BitSet(size);
+        this.nullReservationIds = new BitSet(size);
+        this.sourcePositions = new int[size];
+        this.sortedIndexes = new int[size];
+
+        byte[] sourceIdBytes = builder.idBytes.toByteArray();
+        ByteArrayOutputStream sortedIdBytes = new ByteArrayOutputStream(sourceIdBytes.length);
+
+        for (int i = 0; i < size; i++) {
+            int position = (int) keys[i];
+
+            epochDays[i] = builder.epochDays[position];
+            partySizes[i] = builder.partySizes[position];
+            guestOrdinals[i] = builder.guestOrdinals[position];
+            unscaledSpends[i] = builder.unscaledSpends[position];
+            spendScales[i] = builder.spendScales[position];
+            nullScheduledDates.set(i, builder.nullScheduledDates.get(position));
+            nullReservationIds.set(i, builder.nullReservationIds.get(position));
+
+            int idOffset = builder.idOffsets[position];
+            sortedIdBytes.write(sourceIdBytes, idOffset, builder.idOffsets[position + 1] - idOffset);
+            idOffsets[i + 1] = sortedIdBytes.size();
+
+            sourcePositions[i] = position;
+            sortedIndexes[position] = i;
+        }
+
+        this.idBytes = sortedIdBytes.toByteArray();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<Reservation> findByScheduledDate(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null && endDate == null) {
+            return reservations;
+        }
+
+        int from = startDate == null ? 0 : ReservationSnapshot.lowerBound(epochDays, startDate.toEpochDay());
+        int to = endDate == null ? size : ReservationSnapshot.lowerBound(epochDays, endDate.toEpochDay() + 1);
+
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+
+        // Restore datasource order of the matches
+        int[] positions = Arrays.copyOfRange(sourcePositions, from, to);
+        Arrays.sort(positions);
+
+        List<Reservation> filteredList = new ArrayList<>(positions.length);
+
+        for (int position : positions) {
+            filteredList.add(toReservation(sortedIndexes[position]));
+        }
+
+        return filteredList;
+    }
+
+    @Override
+    public Map<String, CustomerStatistics> getCustomerStatistics(LocalDate startDate, LocalDate endDate,
+                                                                 ForkJoinPool pool, int parallelThreshold) {
+        int from = startDate == null ? 0 : ReservationSnapshot.lowerBound(epochDays, startDate.toEpochDay());
+        int to = endDate == null ? size : ReservationSnapshot.lowerBound(epochDays, endDate.toEpochDay() + 1);
+
+        CustomerStatistics[] statistics = pool == null || to - from <= parallelThreshold
+                ? aggregate(from, to) : pool.invoke(new AggregationTask(from, to, parallelThreshold));
+
+        return CustomerStatistics.toStatisticsMap(statistics);
+    }
+
+    /**
+     * Aggregate a slice of the columns, in date order.
+     *
+     * @param from The first sorted index
+     * @param to   The sorted index after the last reservation
+     * @return The statistics of each customer by customer ordinal, null for customers without a reservation
+     */
+    private CustomerStatistics[] aggregate(int from, int to) {
+        CustomerStatistics[] statistics = new CustomerStatistics[customerCount];
+
+        for (int i = from; i < to; i++) {
+            int guestOrdinal = guestOrdinals[i];
+
+            if (guestOrdinal == NO_GUEST) {
+                continue;
+            }
+
+            int customerOrdinal = customerOrdinals[guestOrdinal];
+            CustomerStatistics customerStatistics = statistics[customerOrdinal];
+
+            if (customerStatistics == null) {
+                // Named after the customer's earliest reservation
+                Guest guest = guests[guestOrdinal];
+                customerStatistics = new CustomerStatistics(guest.getId(), guest.getName());
+                statistics[customerOrdinal] = customerStatistics;
+            }
+
+            customerStatistics.add(unscaledSpends[i], spendScales[i], partySizes[i]);
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Get the columns of the first reservations in datasource order, so they can be written to a binary snapshot
+     * without creating reservation objects.
+     *
+     * @param count The number of reservations, from the first in datasource order
+     * @return A view of the columns
+     */
+    ReservationSnapshotStore.Columns getSourceColumns(int count) {
+        // Guests are numbered in order of first reservation, so the first reservations only refer to the first guests
+        int guestCount = 0;
+
+        for (int position = 0; position < count; position++) {
+            guestCount = Math.max(guestCount, guestOrdinals[sortedIndexes[position]] + 1);
+        }
+
+        int sourceGuestCount = guestCount;
+
+        return new ReservationSnapshotStore.Columns() {
+
+            @Override
+            public int size() {
+                return count;
+            }
+
+            @Override
+            public int getGuestCount() {
+                return sourceGuestCount;
+            }
+
+            @Override
+            public Guest getGuest(int guestOrdinal) {
+                return guests[guestOrdinal];
+            }
+
+            @Override
+            public int getEpochDay(int position) {
+                int i = sortedIndexes[position];
+
+                return nullScheduledDates.get(i) ? ReservationSnapshotStore.NULL_VALUE : epochDays[i];
+            }
+
+            @Override
+            public int getPartySize(int position) {
+                return partySizes[sortedIndexes[position]];
+            }
+
+            @Override
+            public int getGuestOrdinal(int position) {
+                int guestOrdinal = guestOrdinals[sortedIndexes[position]];
+
+                return guestOrdinal == NO_GUEST ? ReservationSnapshotStore.NULL_VALUE : guestOrdinal;
+            }
+
+            @Override
+            public long getUnscaledSpend(int position) {
+                return unscaledSpends[sortedIndexes[position]];
+            }
+
+            @Override
+            public int getSpendScale(int position) {
+                // Both mark a missing spend with the same value
+                return spendScales[sortedIndexes[position]];
+            }
+
+            @Override
+            public void writeReservationId(DataOutputStream output, int position) throws IOException {
+                int i = sortedIndexes[position];
+
+                if (nullReservationIds.get(i)) {
+                    output.writeInt(-1);
+                    return;
+                }
+
+                output.writeInt(idOffsets[i + 1] - idOffsets[i]);
+                output.write(idBytes, idOffsets[i], idOffsets[i + 1] - idOffsets[i]);
+            }
+        };
+    }
+
+    /**
+     * Create the reservation object at a sorted index.
+     *
+     * @param i
+     * @return A new reservation, not shared with the store
+     */
+    private Reservation toReservation(int i) {
+        Reservation reservation = new Reservation();
+
+        if (!nullReservationIds.get(i)) {
+            reservation.setReservation_id(
+                    new String(idBytes, idOffsets[i], idOffsets[i + 1] - idOffsets[i], StandardCharsets.UTF_8));
+        }
+
+        reservation.setParty_size(partySizes[i]);
+
+        if (!nullScheduledDates.get(i)) {
+            reservation.setScheduled_epoch_day(epochDays[i]);
+        }
+
+        if (spendScales[i] != CustomerStatistics.NO_SPEND_SCALE) {
+            reservation.setTotal_spend(BigDecimal.valueOf(unscaledSpends[i], spendScales[i]));
+        }
+
+        if (guestOrdinals[i] != NO_GUEST) {
+            Guest guest = new Guest();
+            guest.setId(guests[guestOrdinals[i]].getId());
+            guest.setName(guests[guestOrdinals[i]].getName());
+            reservation.setGuest(guest);
+        }
+
+        return reservation;
+    }
+
+    /**
+     * Aggregates a slice of the columns, splitting it in two while it holds more reservations than the threshold.
+     */
+    private class AggregationTask extends RecursiveTask<CustomerStatistics[]> {
+
+        private final int from;
+        private final int to;
+        private final int parallelThreshold;
+
+        AggregationTask(int from, int to, int parallelThreshold) {
+            this.from = from;
+            this.to = to;
+            this.parallelThreshold = parallelThreshold;
+        }
+
+        @Override
+        protected CustomerStatistics[] compute() {
+            if (to - from <= Math.max(parallelThreshold, 1)) {
+                return aggregate(from, to);
+            }
+
+            int mid = (from + to) >>> 1;
+
+            AggregationTask lowerTask = new AggregationTask(from, mid, parallelThreshold);
+            lowerTask.fork();
+
+            CustomerStatistics[] upperStatistics = new AggregationTask(mid, to, parallelThreshold).compute();
+            CustomerStatistics[] lowerStatistics = lowerTask.join();
+
+            // The upper half is merged into the lower one, so each customer keeps the name of their earliest
+            // reservation as in the sequential aggregation
+            CustomerStatistics.mergeStatistics(lowerStatistics, upperStatistics);
+
+            return lowerStatistics;
+        }
+    }
+
+    /**
+     * Collects reservations in datasource order into growable columns, one reservation at a time.
+     */
+    public static class Builder {
+
+        private int size;
+
+        private final GuestDictionary guestDictionary = new GuestDictionary();
+
+        private int[] epochDays = new int[1024];
+        private int[] partySizes = new int[1024];
+        private int[] guestOrdinals = new int[1024];
+        private long[] unscaledSpends = new long[1024];
+        private int[] spendScales = new int[1024];
+        private int[] idOffsets = new int[1025];
+
+        private final ByteArrayOutputStream idBytes = new ByteArrayOutputStream();
+        private final BitSet nullScheduledDates = new BitSet();
+        private final BitSet nullReservationIds = new BitSet();
+
+        /**
+         * Append a reservation to the columns.
+         *
+         * @param reservation
+         */
+        public void add(Reservation reservation) {
+            BigDecimal spend = reservation.getTotal_spend();
+            byte[] id = reservation.getReservation_id() == null
+                    ? null : reservation.getReservation_id().getBytes(StandardCharsets.UTF_8);
+
+            add(reservation.getScheduled_epoch_day(), reservation.getScheduled_date() == null,
+                    reservation.getParty_size(),
+                    reservation.getGuest() == null ? NO_GUEST : guestDictionary.add(reservation.getGuest()),
+                    spend == null ? 0 : spend.unscaledValue().longValueExact(),
+                    spend == null ? CustomerStatistics.NO_SPEND_SCALE : spend.scale(), id, id == null ? 0 : id.length);
+        }
+
+        /**
+         * Add a guest to the dictionary ahead of its reservations.
+         *
+         * @param guest
+         * @return The ordinal to append the reservations of the guest with
+         */
+        int addGuest(Guest guest) {
+            return guestDictionary.add(guest);
+        }
+
+        /**
+         * Append a reservation given as the values of its columns, e.g. as read from a binary snapshot.
+         *
+         * @param epochDay          The scheduled epoch day, 0 without a scheduled date
+         * @param nullScheduledDate
+         * @param partySize
+         * @param guestOrdinal      An ordinal returned by {@link #addGuest}, or {@link #NO_GUEST}
+         * @param unscaledSpend
+         * @param spendScale        The scale of the spend, or {@link CustomerStatistics#NO_SPEND_SCALE}
+         * @param id                Holds the UTF-8 reservation id in its first idLength bytes, null without an id
+         * @param idLength
+         */
+        void add(int epochDay, boolean nullScheduledDate, int partySize, int guestOrdinal, long unscaledSpend,
+                 int spendScale, byte[] id, int idLength) {
+            if (size == epochDays.length) {
+                grow();
+            }
+
+            epochDays[size] = epochDay;
+            partySizes[size] = partySize;
+            guestOrdinals[size] = guestOrdinal;
+            unscaledSpends[size] = unscaledSpend;
+            spendScales[size] = spendScale;
+
+            nullScheduledDates.set(size, nullScheduledDate);
+            nullReservationIds.set(size, id == null);
+
+            if (id != null) {
+                idBytes.write(id, 0, idLength);
+            }
+
+            size++;
+            idOffsets[size] = idBytes.size();
+        }
+
+        /**
+         * Sort the collected columns into a store.
+         *
+         * @param loadTimeMillis
+         * @return The built store
+         */
+        public ColumnarReservationStore build(long loadTimeMillis) {
+            return new ColumnarReservationStore(this, loadTimeMillis);
+        }
+
+        private void grow() {
+            int capacity = epochDays.length * 2;
+
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            partySizes = Arrays.copyOf(partySizes, capacity);
+            guestOrdinals = Arrays.copyOf(guestOrdinals, capacity);
+            unscaledSpends = Arrays.copyOf(unscaledSpends, capacity);
+            spendScales = Arrays.copyOf(spendScales, capacity);
+            idOffsets = Arrays.copyOf(idOffsets, capacity + 1);
+        }
+    }
+}
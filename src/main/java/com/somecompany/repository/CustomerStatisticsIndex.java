@@ -0,0 +1,345 @@
+package com.somecompany.repository;
+
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Guest;
+import com.somecompany.model.Reservation;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Immutable per-customer reservation statistics, pre-aggregated by scheduled day and by calendar month.<br/>
+ * Statistics over a date range are built by merging the month rollups of the months fully inside the range and the
+ * daily buckets at its edges, so a report never has to touch the raw reservations. Customers are identified by their
+ * dense ordinal in the guest dictionary, so merging indexes a plain array rather than hashing guest ids. Over large
+ * periods the buckets can be merged in parallel on a fork/join pool, each task into its own accumulators, giving the
+ * same statistics as the sequential merge.
+ *
+ * @author patrick
+ */
+public class CustomerStatisticsIndex {
+
+    // Distinct scheduled epoch days, sorted ascending
+    private final int[] days;
+
+    // The statistics of each customer with a reservation on the day at the same index
+    private final CustomerStatistics[][] dayBuckets;
+
+    // The customer ordinal of each entry of the day buckets
+    private final int[][] dayBucketOrdinals;
+
+    // For each day, the index of the first day of its month
+    private final int[] monthStarts;
+
+    // For each day, the index after the last day of its month
+    private final int[] monthEnds;
+
+    // For each day, the statistics of each customer over its whole month
+    private final CustomerStatistics[][] monthBuckets;
+
+    // The customer ordinal of each entry of the month buckets
+    private final int[][] monthBucketOrdinals;
+
+    // The number of distinct guest ids
+    private final int customerCount;
+
+    // The number of reservations before each day, with the total at the end
+    private final int[] reservationCounts;
+
+    /**
+     * Build the index from reservations sorted by scheduled date.
+     *
+     * @param sortedReservations
+     * @param guestDictionary    A dictionary holding the guests of all reservations
+     */
+    public CustomerStatisticsIndex(List<Reservation> sortedReservations, GuestDictionary guestDictionary) {
+        this.customerCount = guestDictionary.getCustomerCount();
+
+        // Scratch accumulators reused by every bucket, with the ordinals set in the current bucket
+        CustomerStatistics[] statistics = new CustomerStatistics[customerCount];
+        int[] ordinals = new int[customerCount];
+
+        // Daily buckets, one per run of reservations on the same day
+        List<Integer> dayList = new ArrayList<>();
+        List<CustomerStatistics[]> dayBucketList = new ArrayList<>();
+        List<int[]> dayBucketOrdinalList = new ArrayList<>();
+        List<Integer> reservationCountList = new ArrayList<>();
+
+        int start = 0;
+
+        while (start < sortedReservations.size()) {
+            int day = sortedReservations.get(start).getScheduled_epoch_day();
+            int count = 0;
+
+            int end = start;
+
+            while (end < sortedReservations.size() && sortedReservations.get(end).getScheduled_epoch_day() == day) {
+                Reservation reservation = sortedReservations.get(end);
+                Guest guest = reservation.getGuest();
+                int ordinal = guestDictionary.getCustomerOrdinal(guestDictionary.add(guest));
+
+                if (statistics[ordinal] == null) {
+                    statistics[ordinal] = new CustomerStatistics(guest.getId(), guest.getName());
+                    ordinals[count++] = ordinal;
+                }
+
+                statistics[ordinal].add(reservation);
+                end++;
+            }
+
+            dayList.add(day);
+            dayBucketOrdinalList.add(Arrays.copyOf(ordinals, count));
+            dayBucketList.add(takeBucket(statistics, ordinals, count));
+            reservationCountList.add(start);
+
+            start = end;
+        }
+
+        this.days = dayList.stream().mapToInt(Integer::intValue).toArray();
+        this.dayBuckets = dayBucketList.toArray(new CustomerStatistics[0][]);
+        this.dayBucketOrdinals = dayBucketOrdinalList.toArray(new int[0][]);
+
+        reservationCountList.add(sortedReservations.size());
+        this.reservationCounts = reservationCountList.stream().mapToInt(Integer::intValue).toArray();
+
+        // Month rollups, one per run of days in the same calendar month
+        this.monthStarts = new int[days.length];
+        this.monthEnds = new int[days.length];
+        this.monthBuckets = new CustomerStatistics[days.length][];
+        this.monthBucketOrdinals = new int[days.length][];
+
+        start = 0;
+
+        while (start < days.length) {
+            int month = toMonth(days[start]);
+            int count = 0;
+
+            int end = start;
+
+            while (end < days.length && toMonth(days[end]) == month) {
+                for (int k = 0; k < dayBuckets[end].length; k++) {
+                    int ordinal = dayBucketOrdinals[end][k];
+
+                    if (statistics[ordinal] == null) {
+                        statistics[ordinal] = new CustomerStatistics(dayBuckets[end][k].getGuestId(),
+                                dayBuckets[end][k].getName());
+                        ordinals[count++] = ordinal;
+                    }
+
+                    statistics[ordinal].merge(dayBuckets[end][k]);
+                }
+
+                end++;
+            }
+
+            int[] monthBucketOrdinal = Arrays.copyOf(ordinals, count);
+            CustomerStatistics[] monthBucket = takeBucket(statistics, ordinals, count);
+
+            for (int d = start; d < end; d++) {
+                monthStarts[d] = start;
+                monthEnds[d] = end;
+                monthBuckets[d] = monthBucket;
+                monthBucketOrdinals[d] = monthBucketOrdinal;
+            }
+
+            start = end;
+        }
+    }
+
+    /**
+     * Get the statistics of each customer with a reservation within a time period.
+     *
+     * @param startDate The inclusive start of the period, or null for no lower bound
+     * @param endDate   The inclusive end of the period, or null for no upper bound
+     * @return A map storing unique customers by guest id, with the value holding their reservation statistics
+     */
+    public Map<String, CustomerStatistics> getCustomerStatistics(LocalDate startDate, LocalDate endDate) {
+        return getCustomerStatistics(startDate, endDate, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the statistics of each customer with a reservation within a time period, merging the buckets in parallel
+     * when the period holds more reservations than the threshold.
+     *
+     * @param startDate         The inclusive start of the period, or null for no lower bound
+     * @param endDate           The inclusive end of the period, or null for no upper bound
+     * @param pool              The pool to merge on, or null to always merge sequentially
+     * @param parallelThreshold The number of reservations up to which buckets are merged sequentially
+     * @return A map storing unique customers by guest id, with the value holding their reservation statistics
+     */
+    public Map<String, CustomerStatistics> getCustomerStatistics(LocalDate startDate, LocalDate endDate,
+                                                                 ForkJoinPool pool, int parallelThreshold) {
+        int from = startDate == null ? 0 : ReservationSnapshot.lowerBound(days, startDate.toEpochDay());
+        int to = endDate == null ? days.length : ReservationSnapshot.lowerBound(days, endDate.toEpochDay() + 1);
+
+        CustomerStatistics[] statistics = pool == null
+                || reservationCounts[to] - reservationCounts[from] <= parallelThreshold
+                ? mergeBuckets(from, to) : pool.invoke(new MergeTask(from, to, parallelThreshold));
+
+        return CustomerStatistics.toStatisticsMap(statistics);
+    }
+
+    /**
+     * Merge the buckets covering a range of days, in date order.
+     *
+     * @param from The index of the first day
+     * @param to   The index after the last day
+     * @return The statistics of each customer by customer ordinal, null for customers without a reservation
+     */
+    private CustomerStatistics[] mergeBuckets(int from, int to) {
+        CustomerStatistics[] statistics = new CustomerStatistics[customerCount];
+
+        int i = from;
+
+        while (i < to) {
+            if (monthStarts[i] >= from && monthEnds[i] <= to) {
+                // Whole month is inside the period, use the month rollup
+                mergeBucket(statistics, monthBuckets[i], monthBucketOrdinals[i]);
+                i = monthEnds[i];
+            } else {
+                mergeBucket(statistics, dayBuckets[i], dayBucketOrdinals[i]);
+                i++;
+            }
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Split a day range at a month boundary near the middle of its reservations, so both halves can still use month
+     * rollups.
+     *
+     * @param from The index of the first day
+     * @param to   The index after the last day
+     * @return The index of the first day of the upper half, or -1 if the range cannot be split
+     */
+    private int split(int from, int to) {
+        if (to - from < 2 || (monthStarts[from] == from && monthEnds[from] == to)) {
+            // A single day, or a single month served by its rollup
+            return -1;
+        }
+
+        int middleCount = (reservationCounts[from] + reservationCounts[to]) >>> 1;
+
+        // The first day at or after the middle reservation
+        int mid = Math.max(from + 1, Math.min(to - 1, upperBound(reservationCounts, from, to, middleCount)));
+
+        if (monthStarts[mid] > from) {
+            mid = monthStarts[mid];
+        } else if (monthEnds[mid] < to) {
+            mid = monthEnds[mid];
+        }
+
+        return mid > from && mid < to ? mid : -1;
+    }
+
+    private static int upperBound(int[] counts, int from, int to, int count) {
+        int low = from;
+        int high = to;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (counts[mid] <= count) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low - 1;
+    }
+
+    /**
+     * Merge the statistics of a bucket into the result, without modifying the bucket.
+     *
+     * @param statistics The statistics of each customer by customer ordinal
+     * @param bucket
+     * @param ordinals   The customer ordinal of each entry of the bucket
+     */
+    private static void mergeBucket(CustomerStatistics[] statistics, CustomerStatistics[] bucket, int[] ordinals) {
+        for (int k = 0; k < bucket.length; k++) {
+            CustomerStatistics customerStatistics = statistics[ordinals[k]];
+
+            if (customerStatistics == null) {
+                customerStatistics = new CustomerStatistics(bucket[k].getGuestId(), bucket[k].getName());
+                statistics[ordinals[k]] = customerStatistics;
+            }
+
+            customerStatistics.merge(bucket[k]);
+        }
+    }
+
+    /**
+     * Merges the buckets of a day range, splitting it in two while it holds more reservations than the threshold.
+     */
+    private class MergeTask extends RecursiveTask<CustomerStatistics[]> {
+
+        private final int from;
+        private final int to;
+        private final int parallelThreshold;
+
+        MergeTask(int from, int to, int parallelThreshold) {
+            this.from = from;
+            this.to = to;
+            this.parallelThreshold = parallelThreshold;
+        }
+
+        @Override
+        protected CustomerStatistics[] compute() {
+            int mid = reservationCounts[to] - reservationCounts[from] <= parallelThreshold ? -1 : split(from, to);
+
+            if (mid < 0) {
+                return mergeBuckets(from, to);
+            }
+
+            MergeTask lowerTask = new MergeTask(from, mid, parallelThreshold);
+            lowerTask.fork();
+
+            CustomerStatistics[] upperStatistics = new MergeTask(mid, to, parallelThreshold).compute();
+            CustomerStatistics[] lowerStatistics = lowerTask.join();
+
+            // The upper half is merged into the lower one, so each customer keeps the name of their earliest bucket
+            // as in the sequential merge. Both arrays hold accumulators owned by this task, which can be reused.
+            CustomerStatistics.mergeStatistics(lowerStatistics, upperStatistics);
+
+            return lowerStatistics;
+        }
+    }
+
+    /**
+     * Move the statistics set in the scratch accumulators into a bucket, clearing them for the next one.
+     *
+     * @param statistics The scratch accumulators by customer ordinal
+     * @param ordinals   The ordinals set in the scratch accumulators
+     * @param count      The number of ordinals set
+     * @return The bucket, in the order of the ordinals
+     */
+    private static CustomerStatistics[] takeBucket(CustomerStatistics[] statistics, int[] ordinals, int count) {
+        CustomerStatistics[] bucket = new CustomerStatistics[count];
+
+        for (int k = 0; k < count; k++) {
+            bucket[k] = statistics[ordinals[k]];
+            statistics[ordinals[k]] = null;
+        }
+
+        return bucket;
+    }
+
+    /**
+     * Convert an epoch day to a sequential month number.
+     *
+     * @param epochDay
+     * @return The number of months since year 0 of the month containing the day
+     */
+    private static int toMonth(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+}
@@ -0,0 +1,87 @@
+package com.somecompany.repository;
+
+import com.somecompany.model.Guest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary of the distinct guests of a set of reservations, built at load time.<br/>
+ * Each distinct guest, i.e. id and name pair, is stored once and numbered in order of first appearance, and each
+ * distinct guest id is mapped to a dense customer ordinal, so per-customer aggregation can index a plain array
+ * instead of hashing keys.
+ *
+ * @author patrick
+ */
+public class GuestDictionary {
+
+    // Ordinal of each distinct guest
+    private final Map<Guest, Integer> guestOrdinalMap = new HashMap<>();
+
+    private final List<Guest> guestList = new ArrayList<>();
+
+    // Customer ordinal of each guest id
+    private final Map<String, Integer> customerOrdinalMap = new HashMap<>();
+
+    // Customer ordinal of each guest, by guest ordinal
+    private final List<Integer> customerOrdinalList = new ArrayList<>();
+
+    /**
+     * Add a guest to the dictionary if it is not there yet.
+     *
+     * @param guest
+     * @return The ordinal of the guest
+     */
+    public int add(Guest guest) {
+        Integer guestOrdinal = guestOrdinalMap.get(guest);
+
+        if (guestOrdinal == null) {
+            // Stored as a copy, so the dictionary never shares a guest with the reservation it came from
+            Guest storedGuest = new Guest();
+            storedGuest.setId(guest.getId());
+            storedGuest.setName(guest.getName());
+
+            guestOrdinal = guestList.size();
+            guestOrdinalMap.put(storedGuest, guestOrdinal);
+            guestList.add(storedGuest);
+
+            customerOrdinalList.add(customerOrdinalMap.computeIfAbsent(guest.getId(),
+                    guestId -> customerOrdinalMap.size()));
+        }
+
+        return guestOrdinal;
+    }
+
+    /**
+     * Get the stored instance of a guest, adding it if needed, so equal guests share a single instance.
+     *
+     * @param guest
+     * @return The stored guest equal to the given one
+     */
+    public Guest intern(Guest guest) {
+        return getGuest(add(guest));
+    }
+
+    public Guest getGuest(int guestOrdinal) {
+        return guestList.get(guestOrdinal);
+    }
+
+    public int getCustomerOrdinal(int guestOrdinal) {
+        return customerOrdinalList.get(guestOrdinal);
+    }
+
+    public int getGuestCount() {
+        return guestList.size();
+    }
+
+    /**
+     * Get the number of distinct guest ids.
+     *
+     * @return The number of customer ordinals in use
+     */
+    public int getCustomerCount() {
+        return customerOrdinalMap.size();
+    }
+}
@@ -0,0 +1,685 @@
+package com.somecompany.repository;
+
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Reservation;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Reservation repository which parses the datasource into an immutable in-memory snapshot and serves all queries
+ * from it.<br/>
+ * A reload parses the datasource into a new snapshot and swaps it in with a single volatile write, so readers never
+ * block and never see a partially loaded dataset. Snapshots hold either reservation objects or primitive columns,
+ * as selected by the <code>reservation.storage</code> property.<br/>
+ * Reservations written through the API are made durable by the reservation log, then swapped in the same way as a
+ * snapshot with the written reservations appended, without reading the datasource again. Once there are enough of them
+ * relative to the loaded store, they are merged into a new loaded store in the background, so the merges of a growing
+ * store stay proportional to its size and never hold up a write. Each load records its duration, the bytes read and
+ * the records loaded, tagged by whether they came from the datasource or its binary snapshot.<br/>
+ * A partitioned datasource is loaded in parallel, one store per partition. Within a memory budget, partitions left
+ * unused are evicted and read again from their file when a query needs them.<br/>
+ * Statistics over the whole history are served from live per-customer statistics, which writes update in place.
+ *
+ * @author patrick
+ */
+@Repository
+@Slf4j
+public class InMemoryReservationRepository implements ReservationRepository {
+
+    private static final String STORAGE_OBJECTS = "objects";
+
+    private static final String STORAGE_COLUMNAR = "columnar";
+
+    // Rough heap taken by a reservation in each storage, indexes included, to weigh the resident partitions
+    private static final int OBJECT_BYTES_PER_RESERVATION = 320;
+
+    private static final int COLUMNAR_BYTES_PER_RESERVATION = 80;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ReservationDataSource reservationDataSource;
+
+    @Autowired
+    private ReservationReader reservationReader;
+
+    @Autowired
+    private ReservationSnapshotStore snapshotStore;
+
+    @Autowired
+    private ReservationLog reservationLog;
+
+    // "objects" or "columnar"
+    @Value("${reservation.storage:objects}")
+    private String storage;
+
+    @Value("${report.aggregation.parallel:true}")
+    private boolean parallelAggregation;
+
+    @Value("${report.aggregation.parallel-threshold:100000}")
+    private int parallelThreshold;
+
+    // Answer reports over the whole history from statistics maintained as reservations are written
+    @Value("${report.aggregation.live:true}")
+    private boolean liveAggregation;
+
+    // Threads loading the partitions of a partitioned datasource, 0 for one per core
+    @Value("${reservation.partition.load-threads:0}")
+    private int partitionLoadThreads;
+
+    // Estimated heap held by the stores of the resident partitions, beyond which the least recently used are evicted,
+    // 0 to keep every partition resident
+    @Value("${reservation.partition.memory-budget:0B}")
+    private DataSize partitionMemoryBudget;
+
+    // The number of written reservations above which they are merged into a new fully loaded store
+    @Value("${reservation.log.merge-threshold:10000}")
+    private int mergeThreshold;
+
+    // The fraction of the size of the loaded store above which written reservations are merged, if more than the
+    // merge threshold
+    @Value("${reservation.log.merge-ratio:0.1}")
+    private double mergeRatio;
+
+    private final ExecutorService mergeExecutor = Executors.newSingleThreadExecutor(
+            new CustomizableThreadFactory("reservation-merger-"));
+
+    // The merge in progress or the last one, guarded by the repository
+    private CompletableFuture<Void> merge = CompletableFuture.completedFuture(null);
+
+    // The snapshot currently served to readers
+    private volatile ReservationStore snapshot = ReservationSnapshot.EMPTY;
+
+    // The statistics of every customer over the reservations of the snapshot, updated in place by writes
+    private volatile LiveCustomerStatistics liveStatistics;
+
+    // The stores of the resident partitions of a partitioned datasource
+    private Cache<PartitionedReservationStore.Partition, ReservationStore> partitionCache;
+
+    // The number of reservations of the snapshot which came from the datasource, all ahead of the written ones
+    private int dataSourceCount;
+
+    /**
+     * Load the datasource and the reservations written so far, and register the repository metrics.
+     *
+     * @throws IOException
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (!STORAGE_OBJECTS.equals(storage) && !STORAGE_COLUMNAR.equals(storage)) {
+            throw new IllegalArgumentException("Unknown reservation storage: " + storage);
+        }
+
+        Caffeine<Object, Object> partitionCacheBuilder = Caffeine.newBuilder().recordStats()
+                // Evict on the loading thread, so the memory is released before the next partition is loaded
+                .executor(Runnable::run);
+
+        if (partitionMemoryBudget.toBytes() > 0) {
+            int bytesPerReservation = STORAGE_COLUMNAR.equals(storage)
+                    ? COLUMNAR_BYTES_PER_RESERVATION : OBJECT_BYTES_PER_RESERVATION;
+
+            partitionCache = partitionCacheBuilder.maximumWeight(partitionMemoryBudget.toBytes())
+                    .weigher((PartitionedReservationStore.Partition partition, ReservationStore store) ->
+                            (int) Math.min(Integer.MAX_VALUE, (long) store.size() * bytesPerReservation))
+                    .build();
+        } else {
+            partitionCache = partitionCacheBuilder.build();
+        }
+
+        CaffeineCacheMetrics.monitor(meterRegistry, partitionCache, "reservationPartitions");
+
+        snapshot = load(reservationLog.recover());
+        liveStatistics = new LiveCustomerStatistics(snapshot);
+
+        // Later writes are applied as they are committed
+        reservationLog.start(this::apply);
+
+        Gauge.builder("reservation.repository.records", this, InMemoryReservationRepository::count)
+                .description("Number of reservation records held in memory").register(meterRegistry);
+        TimeGauge.builder("reservation.repository.load.time", this, TimeUnit.MILLISECONDS,
+                repository -> repository.snapshot.getLoadTimeMillis())
+                .description("Time taken to load the reservation datasource").register(meterRegistry);
+    }
+
+    @Override
+    public List<Reservation> findAll() {
+        return snapshot.getReservations();
+    }
+
+    @Override
+    public List<Reservation> findByScheduledDate(LocalDate startDate, LocalDate endDate) {
+        return snapshot.findByScheduledDate(startDate, endDate);
+    }
+
+    @Override
+    public Map<String, CustomerStatistics> findCustomerStatistics(LocalDate startDate, LocalDate endDate) {
+        if (liveAggregation && startDate == null && endDate == null) {
+            return liveStatistics.getCustomerStatistics();
+        }
+
+        // Large periods are merged on the common fork/join pool
+        return snapshot.getCustomerStatistics(startDate, endDate,
+                parallelAggregation ? ForkJoinPool.commonPool() : null, parallelThreshold);
+    }
+
+    @Override
+    public long count() {
+        return snapshot.size();
+    }
+
+    @Override
+    public void saveAll(List<Reservation> reservationList) throws IOException {
+        reservationLog.append(reservationList);
+    }
+
+    @Override
+    public synchronized void reload() throws IOException {
+        // The written reservations are carried over from the current snapshot
+        List<Reservation> writtenList = new ArrayList<>(
+                snapshot.getReservations().subList(dataSourceCount, snapshot.size()));
+
+        // Readers keep using the current snapshot until the new one is fully built
+        ReservationStore reloadedStore = load(writtenList);
+        LiveCustomerStatistics reloadedStatistics = new LiveCustomerStatistics(reloadedStore);
+
+        ReservationStore replacedStore = snapshot instanceof AppendedReservationStore
+                ? ((AppendedReservationStore) snapshot).getLoadedStore() : snapshot;
+
+        snapshot = reloadedStore;
+        liveStatistics = reloadedStatistics;
+
+        if (replacedStore instanceof PartitionedReservationStore) {
+            // The replaced partitions are never asked for again, except by readers still holding the replaced store
+            partitionCache.invalidateAll(((PartitionedReservationStore) replacedStore).getPartitions());
+        }
+
+        eventPublisher.publishEvent(new ReservationsChangedEvent(this));
+    }
+
+    /**
+     * Wait for the merge of written reservations in progress, if any.
+     */
+    public void awaitMerge() {
+        CompletableFuture<Void> currentMerge;
+
+        synchronized (this) {
+            currentMerge = merge;
+        }
+
+        currentMerge.join();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        mergeExecutor.shutdownNow();
+    }
+
+    /**
+     * Make committed reservations visible to readers.<br/>
+     * They are appended to the written reservations of the current snapshot, and the live statistics take them in
+     * place. A merge is started once there are enough written reservations.
+     *
+     * @param reservationList The reservations, in the order committed
+     */
+    private synchronized void apply(List<Reservation> reservationList) {
+        AppendedReservationStore appendedStore = snapshot instanceof AppendedReservationStore
+                ? (AppendedReservationStore) snapshot
+                : new AppendedReservationStore(snapshot, Collections.emptyList());
+
+        // Only the committed reservations are indexed, along with the last written batches no larger than them
+        snapshot = appendedStore.append(reservationList);
+        reservationList.forEach(liveStatistics::add);
+
+        startMerge();
+
+        eventPublisher.publishEvent(new ReservationsChangedEvent(this));
+    }
+
+    /**
+     * Start merging the written reservations of the current snapshot in the background, unless a merge is in progress
+     * or there are no more of them than the larger of the merge threshold and the merge ratio of the loaded store.
+     */
+    private synchronized void startMerge() {
+        if (!merge.isDone() || !(snapshot instanceof AppendedReservationStore)) {
+            return;
+        }
+
+        AppendedReservationStore appendedStore = (AppendedReservationStore) snapshot;
+        ReservationStore loadedStore = appendedStore.getLoadedStore();
+        int appendedCount = appendedStore.size() - loadedStore.size();
+
+        // Only the written reservations of a partitioned store are rebuilt by a merge
+        int mergedSize = loadedStore instanceof PartitionedReservationStore
+                ? ((PartitionedReservationStore) loadedStore).getWrittenStore().size() : loadedStore.size();
+
+        if (appendedCount > Math.max(mergeThreshold, (long) (mergeRatio * mergedSize))) {
+            merge = CompletableFuture.runAsync(() -> merge(appendedStore), mergeExecutor);
+        }
+    }
+
+    /**
+     * Merge written reservations into a new fully loaded store, then swap it in with the reservations written since
+     * appended.<br/>
+     * The live statistics are rebuilt along with a merged store, as the merged store names customers after their
+     * earliest reservation. Only the written reservations of a partitioned store are rebuilt, which leaves the customer
+     * names, and so the live statistics, as they are. Runs in the background, only holding the repository to swap the
+     * merged store in.
+     *
+     * @param appendedStore The snapshot when the merge started
+     */
+    private void merge(AppendedReservationStore appendedStore) {
+        ReservationStore loadedStore = appendedStore.getLoadedStore();
+        List<Reservation> appendedList = new ArrayList<>(
+                appendedStore.getReservations().subList(loadedStore.size(), appendedStore.size()));
+        ReservationStore mergedStore;
+        LiveCustomerStatistics mergedStatistics = null;
+
+        try {
+            if (loadedStore instanceof PartitionedReservationStore) {
+                PartitionedReservationStore partitionedStore = (PartitionedReservationStore) loadedStore;
+                List<Reservation> writtenList = new ArrayList<>(partitionedStore.getWrittenStore().getReservations());
+                writtenList.addAll(appendedList);
+
+                mergedStore = partitionedStore.withWrittenStore(build(writtenList, 0));
+            } else {
+                List<Reservation> mergedList = new ArrayList<>(loadedStore.getReservations());
+                mergedList.addAll(appendedList);
+
+                mergedStore = build(mergedList, loadedStore.getLoadTimeMillis());
+                mergedStatistics = new LiveCustomerStatistics(mergedStore);
+            }
+        } catch (RuntimeException e) {
+            // The written reservations stay appended, to be merged after a later write
+            log.warn("Unable to merge " + appendedList.size() + " written reservations: " + e);
+            return;
+        }
+
+        synchronized (this) {
+            if (!(snapshot instanceof AppendedReservationStore)
+                    || ((AppendedReservationStore) snapshot).getLoadedStore() != loadedStore) {
+                // Reloaded during the merge, along with the written reservations
+                return;
+            }
+
+            AppendedReservationStore currentStore = (AppendedReservationStore) snapshot;
+
+            if (mergedStatistics != null) {
+                currentStore.getReservations().subList(appendedStore.size(), currentStore.size())
+                        .forEach(mergedStatistics::add);
+                liveStatistics = mergedStatistics;
+            }
+
+            // The reservations written during the merge stay appended, in the batches they are indexed in
+            snapshot = currentStore.withLoadedStore(mergedStore, appendedList.size());
+
+            eventPublisher.publishEvent(new ReservationsChangedEvent(this));
+        }
+
+        // The reservations written during the merge may be enough for another, once this one is done
+        mergeExecutor.execute(this::startMerge);
+    }
+
+    /**
+     * Load the whole datasource into a new snapshot, from its binary snapshot when that is still current, followed by
+     * the written reservations.
+     *
+     * @param writtenList The reservations written through the API, in the order written
+     * @return The loaded snapshot
+     * @throws IOException
+     */
+    private ReservationStore load(List<Reservation> writtenList) throws IOException {
+        if (reservationDataSource.isPartitioned()) {
+            return loadPartitions(writtenList);
+        }
+
+        long start = System.nanoTime();
+
+        boolean columnar = STORAGE_COLUMNAR.equals(storage);
+        List<Reservation> reservationList = new ArrayList<>();
+        ColumnarReservationStore.Builder columnBuilder;
+        boolean fromSnapshot;
+
+        if (columnar) {
+            // Columnar storage reads the binary snapshot straight into its columns
+            Optional<ColumnarReservationStore.Builder> storedColumns = snapshotStore.readColumns();
+            fromSnapshot = storedColumns.isPresent();
+            columnBuilder = storedColumns.orElseGet(ColumnarReservationStore.Builder::new);
+        } else {
+            Optional<List<Reservation>> storedList = snapshotStore.read();
+            fromSnapshot = storedList.isPresent();
+            storedList.ifPresent(reservationList::addAll);
+            columnBuilder = null;
+        }
+
+        // Columnar storage takes each reservation as it is read, without keeping the objects
+        Consumer<Reservation> consumer = columnar ? columnBuilder::add : reservationList::add;
+        long byteCount;
+
+        if (fromSnapshot) {
+            byteCount = snapshotStore.size();
+        } else {
+            // Stream the datasource one reservation at a time rather than materializing it through a type reference
+            try (CountingInputStream inputStream = new CountingInputStream(reservationDataSource.open())) {
+                reservationReader.read(inputStream, consumer);
+                byteCount = inputStream.count;
+            }
+        }
+
+        // Written reservations follow those of the datasource
+        writtenList.forEach(consumer);
+
+        long loadNanos = System.nanoTime() - start;
+        long loadTimeMillis = TimeUnit.NANOSECONDS.toMillis(loadNanos);
+
+        ReservationStore store = columnar
+                ? columnBuilder.build(loadTimeMillis) : new ReservationSnapshot(reservationList, loadTimeMillis);
+
+        dataSourceCount = store.size() - writtenList.size();
+
+        if (!fromSnapshot) {
+            // Lets the next startup skip parsing. Columns are written as they are, without creating objects
+            if (columnar) {
+                snapshotStore.write((ColumnarReservationStore) store, dataSourceCount);
+            } else {
+                snapshotStore.write(store.getReservations().subList(0, dataSourceCount));
+            }
+        }
+
+        recordLoad(fromSnapshot ? "snapshot" : "datasource", loadNanos, byteCount, store.size());
+
+        log.info("Loaded " + dataSourceCount + " reservations from " + reservationDataSource
+                + (fromSnapshot ? " snapshot" : "") + " and " + writtenList.size()
+                + " written reservations into " + storage + " storage in " + loadTimeMillis + " ms");
+
+        return store;
+    }
+
+    /**
+     * Load every partition of a partitioned datasource into its own store, in parallel, followed by a store of the
+     * written reservations.<br/>
+     * A partition with a description written from its current content is described from it, and only parsed when a
+     * query first needs its reservations. The others are parsed directly, without a binary snapshot, as the load time
+     * is bounded by the largest partition rather than the whole datasource given enough threads. Each parsed partition
+     * is handed to the cache of resident partitions, which keeps as many as the memory budget allows, and its
+     * description is written for the next load.
+     *
+     * @param writtenList The reservations written through the API, in the order written
+     * @return The loaded store
+     * @throws IOException
+     */
+    private ReservationStore loadPartitions(List<Reservation> writtenList) throws IOException {
+        long start = System.nanoTime();
+
+        List<Path> partitionPaths = reservationDataSource.getPartitionPaths();
+        int threadCount = Math.max(1, Math.min(partitionPaths.size(),
+                partitionLoadThreads > 0 ? partitionLoadThreads : Runtime.getRuntime().availableProcessors()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount,
+                new CustomizableThreadFactory("reservation-partition-loader-"));
+        AtomicLong byteCount = new AtomicLong();
+        AtomicLong recordCount = new AtomicLong();
+        List<PartitionedReservationStore.Partition> partitions = new ArrayList<>();
+
+        try {
+            List<Future<PartitionedReservationStore.Partition>> futures = new ArrayList<>();
+
+            for (Path partitionPath : partitionPaths) {
+                futures.add(executor.submit(() -> loadPartition(partitionPath, byteCount, recordCount)));
+            }
+
+            for (Future<PartitionedReservationStore.Partition> future : futures) {
+                partitions.add(awaitPartition(future));
+            }
+        } finally {
+            // Stops the remaining loads when one fails
+            executor.shutdownNow();
+        }
+
+        long loadNanos = System.nanoTime() - start;
+        long loadTimeMillis = TimeUnit.NANOSECONDS.toMillis(loadNanos);
+
+        PartitionedReservationStore store = new PartitionedReservationStore(partitions, this::getPartitionStore,
+                build(writtenList, 0), loadTimeMillis);
+
+        dataSourceCount = store.size() - writtenList.size();
+
+        recordLoad("datasource", loadNanos, byteCount.get(), (int) recordCount.get());
+
+        log.info("Loaded " + dataSourceCount + " reservations from " + partitions.size() + " partitions of "
+                + reservationDataSource + ", " + recordCount.get() + " of them parsed, on " + threadCount
+                + " threads and " + writtenList.size()
+                + " written reservations into " + storage + " storage in " + loadTimeMillis + " ms");
+
+        return store;
+    }
+
+    /**
+     * Describe a partition from its stored description, or else load the partition file into a store of its own, make
+     * it resident and store its description.
+     *
+     * @param partitionPath
+     * @param byteCount     Incremented by the bytes read
+     * @param recordCount   Incremented by the reservations parsed
+     * @return The description of the partition
+     * @throws IOException
+     */
+    private PartitionedReservationStore.Partition loadPartition(Path partitionPath, AtomicLong byteCount,
+                                                                AtomicLong recordCount) throws IOException {
+        Optional<PartitionedReservationStore.Partition> storedPartition = snapshotStore.readPartition(partitionPath);
+
+        if (storedPartition.isPresent()) {
+            // Parsed when a query first needs its reservations
+            return storedPartition.get();
+        }
+
+        // The first and last scheduled epoch days of the partition
+        int[] epochDayRange = {Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+        ReservationStore store = readPartition(partitionPath, byteCount, epochDayRange);
+        PartitionedReservationStore.Partition partition = new PartitionedReservationStore.Partition(partitionPath,
+                store, epochDayRange[0], epochDayRange[1]);
+
+        partitionCache.put(partition, store);
+        recordCount.addAndGet(store.size());
+        snapshotStore.writePartition(partition);
+
+        return partition;
+    }
+
+    /**
+     * Get the store of a partition, reading the partition file again if it was evicted.
+     *
+     * @param partition
+     * @return The store of the partition
+     * @throws UncheckedIOException If the partition file cannot be read
+     */
+    private ReservationStore getPartitionStore(PartitionedReservationStore.Partition partition) {
+        return partitionCache.get(partition, evictedPartition -> {
+            long start = System.nanoTime();
+            AtomicLong byteCount = new AtomicLong();
+
+            try {
+                ReservationStore store = readPartition(evictedPartition.getPath(), byteCount,
+                        new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE});
+
+                recordLoad("partition", System.nanoTime() - start, byteCount.get(), store.size());
+
+                return store;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to load reservation partition " + evictedPartition, e);
+            }
+        });
+    }
+
+    /**
+     * Read a partition file into a store of its own.
+     *
+     * @param partitionPath
+     * @param byteCount     Incremented by the bytes read
+     * @param epochDayRange Updated with the first and last scheduled epoch days of the partition
+     * @return The store of the partition
+     * @throws IOException
+     */
+    private ReservationStore readPartition(Path partitionPath, AtomicLong byteCount, int[] epochDayRange)
+            throws IOException {
+        boolean columnar = STORAGE_COLUMNAR.equals(storage);
+        ColumnarReservationStore.Builder columnBuilder = new ColumnarReservationStore.Builder();
+        List<Reservation> reservationList = new ArrayList<>();
+
+        Consumer<Reservation> storeConsumer = columnar ? columnBuilder::add : reservationList::add;
+
+        Consumer<Reservation> consumer = reservation -> {
+            epochDayRange[0] = Math.min(epochDayRange[0], reservation.getScheduled_epoch_day());
+            epochDayRange[1] = Math.max(epochDayRange[1], reservation.getScheduled_epoch_day());
+            storeConsumer.accept(reservation);
+        };
+
+        try (CountingInputStream inputStream = new CountingInputStream(Files.newInputStream(partitionPath))) {
+            if (ReservationDataSource.isNdjson(partitionPath)) {
+                reservationReader.readLines(inputStream, consumer);
+            } else {
+                reservationReader.read(inputStream, consumer);
+            }
+
+            byteCount.addAndGet(inputStream.count);
+        }
+
+        return columnar ? columnBuilder.build(0) : new ReservationSnapshot(reservationList, 0);
+    }
+
+    private PartitionedReservationStore.Partition awaitPartition(
+            Future<PartitionedReservationStore.Partition> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading reservation partitions");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IOException("Unable to load reservation partition", e.getCause());
+        }
+    }
+
+    /**
+     * Build a store of reservations in the configured storage.
+     *
+     * @param reservationList The reservations in datasource order
+     * @param loadTimeMillis
+     * @return The built store
+     */
+    private ReservationStore build(List<Reservation> reservationList, long loadTimeMillis) {
+        if (STORAGE_COLUMNAR.equals(storage)) {
+            ColumnarReservationStore.Builder columnBuilder = new ColumnarReservationStore.Builder();
+            reservationList.forEach(columnBuilder::add);
+
+            return columnBuilder.build(loadTimeMillis);
+        }
+
+        return new ReservationSnapshot(reservationList, loadTimeMillis);
+    }
+
+    /**
+     * Record the duration and size of a load.
+     *
+     * @param source      "datasource", "snapshot", or "partition" for a partition read again after its eviction
+     * @param loadNanos
+     * @param byteCount
+     * @param recordCount
+     */
+    private void recordLoad(String source, long loadNanos, long byteCount, int recordCount) {
+        Timer.builder("reservation.repository.load").description("Time taken by each load of the reservations")
+                .tag("source", source).register(meterRegistry).record(loadNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("reservation.repository.load.bytes").description("Bytes read by each load")
+                .baseUnit("bytes").tag("source", source).register(meterRegistry).record(byteCount);
+        Counter.builder("reservation.repository.load.records").description("Number of reservation records loaded")
+                .tag("source", source).register(meterRegistry).increment(recordCount);
+    }
+
+    /**
+     * Counts the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if (b >= 0) {
+                count++;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+
+            if (n > 0) {
+                count += n;
+            }
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.somecompany.repository;
+
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Guest;
+import com.somecompany.model.Reservation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-customer reservation statistics over all reservations, updated in place as reservations are written.<br/>
+ * Each customer has their own accumulator in a concurrent map and is locked on its own, so a writer updating some
+ * customers and readers copying the statistics only ever contend on the same customer, never on the whole set. A
+ * report over the whole history is then a copy of one accumulator per customer, without touching the reservations,
+ * which may see the customers of a batch being written partly updated.<br/>
+ * The spend is kept as an unscaled long with its scale, as in {@link CustomerStatistics}, rather than in
+ * <code>LongAdder</code> cells, as the scale of a sum depends on every amount added.
+ *
+ * @author patrick
+ */
+public class LiveCustomerStatistics {
+
+    private final ConcurrentMap<String, Accumulator> accumulators = new ConcurrentHashMap<>();
+
+    /**
+     * Start from the statistics of every customer over all reservations of a store.
+     *
+     * @param store
+     */
+    public LiveCustomerStatistics(ReservationStore store) {
+        for (CustomerStatistics statistics : store.getCustomerStatistics(null, null, null, Integer.MAX_VALUE)
+                .values()) {
+            // Customers of the store keep the name of their earliest reservation in it, as in an appended store
+            Accumulator accumulator = new Accumulator(statistics.getGuestId(), statistics.getName(),
+                    Integer.MIN_VALUE);
+            accumulator.statistics.merge(statistics);
+            accumulators.put(statistics.getGuestId(), accumulator);
+        }
+    }
+
+    /**
+     * Add a written reservation to the statistics of its customer.
+     *
+     * @param reservation
+     */
+    public void add(Reservation reservation) {
+        Guest guest = reservation.getGuest();
+
+        if (guest == null) {
+            return;
+        }
+
+        Accumulator accumulator = accumulators.computeIfAbsent(guest.getId(),
+                guestId -> new Accumulator(guestId, guest.getName(), reservation.getScheduled_epoch_day()));
+
+        synchronized (accumulator) {
+            accumulator.statistics.add(reservation);
+
+            // A new customer is named after their earliest written reservation, the first written of a day, as in an
+            // appended store
+            if (reservation.getScheduled_epoch_day() < accumulator.firstEpochDay) {
+                accumulator.name = guest.getName();
+                accumulator.firstEpochDay = reservation.getScheduled_epoch_day();
+            }
+        }
+    }
+
+    /**
+     * Copy the statistics of every customer.
+     *
+     * @return A new map storing unique customers by guest id, with the value holding a copy of their statistics
+     */
+    public Map<String, CustomerStatistics> getCustomerStatistics() {
+        Map<String, CustomerStatistics> custStatisticsMap = new HashMap<>();
+
+        for (Accumulator accumulator : accumulators.values()) {
+            synchronized (accumulator) {
+                CustomerStatistics statistics = new CustomerStatistics(accumulator.guestId, accumulator.name);
+                statistics.merge(accumulator.statistics);
+                custStatisticsMap.put(accumulator.guestId, statistics);
+            }
+        }
+
+        return custStatisticsMap;
+    }
+
+    /**
+     * The statistics of a customer, guarded by the accumulator itself.
+     */
+    private static class Accumulator {
+
+        private final String guestId;
+
+        private final CustomerStatistics statistics;
+
+        private String name;
+
+        // Scheduled day of the reservation the customer is named after, the earliest possible for customers of the
+        // store, who keep their name
+        private int firstEpochDay;
+
+        Accumulator(String guestId, String name, int firstEpochDay) {
+            this.guestId = guestId;
+            this.statistics = new CustomerStatistics(guestId, name);
+            this.name = name;
+            this.firstEpochDay = firstEpochDay;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.somecompany.repository;
+
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Reservation;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * An immutable store made of the partitions of a partitioned datasource, each an independent, date-sorted store,
+ * followed by a store of the reservations written through the API.<br/>
+ * Every partition knows the range of scheduled dates it holds, its size and the statistics of its customers, while
+ * its store is only fetched through the partition loader when a query needs its reservations, so partitions need not
+ * all be resident, nor even loaded. A query skips the partitions outside its period, and takes the statistics of the
+ * partitions wholly inside it from their rollups, so only the partitions at the edges of a period are read for a
+ * report.<br/>
+ * Partitions are expected to hold disjoint periods, e.g. one calendar month each. Their customer statistics are merged
+ * in order of their first scheduled date, so each customer keeps the name of their earliest reservation, and the
+ * written reservations come last, so a customer keeps the name they have in the partitions.
+ *
+ * @author patrick
+ */
+public class PartitionedReservationStore implements ReservationStore {
+
+    // The datasource partitions in datasource order
+    @Getter
+    private final List<Partition> partitions;
+
+    @Getter
+    private final ReservationStore writtenStore;
+
+    // Gets the store of a partition, loading it if it is not resident
+    private final Function<Partition, ReservationStore> partitionLoader;
+
+    @Getter
+    private final long loadTimeMillis;
+
+    // The partitions in order of their first scheduled date
+    private final List<Partition> datedPartitions;
+
+    // The position in the reservations of the first reservation of each partition, then of the written store, then
+    // the size
+    private final int[] offsets;
+
+    // Iterated store by store, so a traversal fetches each partition once even if it is evicted while read
+    @Getter
+    private final List<Reservation> reservations = new AbstractList<Reservation>() {
+
+        @Override
+        public Reservation get(int position) {
+            if (position < 0 || position >= size()) {
+                throw new IndexOutOfBoundsException("Position " + position + " out of " + size());
+            }
+
+            int index = getStoreIndex(position);
+
+            return getStore(index).getReservations().get(position - offsets[index]);
+        }
+
+        @Override
+        public int size() {
+            return offsets[offsets.length - 1];
+        }
+
+        @Override
+        public Iterator<Reservation> iterator() {
+            return new StoreIterator(0);
+        }
+
+        @Override
+        public ListIterator<Reservation> listIterator(int position) {
+            if (position < 0 || position > size()) {
+                throw new IndexOutOfBoundsException("Position " + position + " out of " + size());
+            }
+
+            return new StoreIterator(position);
+        }
+    };
+
+    /**
+     * @param partitions      The datasource partitions in datasource order
+     * @param partitionLoader Gets the store of a partition, failing with an UncheckedIOException if it cannot be read
+     * @param writtenStore    The reservations written through the API
+     * @param loadTimeMillis
+     */
+    public PartitionedReservationStore(List<Partition> partitions,
+                                       Function<Partition, ReservationStore> partitionLoader,
+                                       ReservationStore writtenStore, long loadTimeMillis) {
+        this.partitions = Collections.unmodifiableList(new ArrayList<>(partitions));
+        this.partitionLoader = partitionLoader;
+        this.writtenStore = writtenStore;
+        this.loadTimeMillis = loadTimeMillis;
+
+        List<Partition> datedPartitions = new ArrayList<>(partitions);
+        datedPartitions.sort(Comparator.comparingInt(Partition::getFirstEpochDay));
+        this.datedPartitions = datedPartitions;
+
+        this.offsets = new int[partitions.size() + 2];
+
+        for (int index = 0; index < partitions.size(); index++) {
+            offsets[index + 1] = offsets[index] + partitions.get(index).getSize();
+        }
+
+        offsets[partitions.size() + 1] = offsets[partitions.size()] + writtenStore.size();
+    }
+
+    /**
+     * Create a store of the same partitions with other written reservations.
+     *
+     * @param writtenStore
+     * @return The new store
+     */
+    public PartitionedReservationStore withWrittenStore(ReservationStore writtenStore) {
+        return new PartitionedReservationStore(partitions, partitionLoader, writtenStore, loadTimeMillis);
+    }
+
+    @Override
+    public List<Reservation> findByScheduledDate(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null && endDate == null) {
+            return reservations;
+        }
+
+        List<Reservation> filteredList = new ArrayList<>();
+
+        for (Partition partition : partitions) {
+            if (partition.overlaps(startDate, endDate)) {
+                filteredList.addAll(partitionLoader.apply(partition).findByScheduledDate(startDate, endDate));
+            }
+        }
+
+        filteredList.addAll(writtenStore.findByScheduledDate(startDate, endDate));
+
+        return filteredList;
+    }
+
+    @Override
+    public Map<String, CustomerStatistics> getCustomerStatistics(LocalDate startDate, LocalDate endDate,
+                                                                 ForkJoinPool pool, int parallelThreshold) {
+        Map<String, CustomerStatistics> custStatisticsMap = new HashMap<>();
+
+        for (Partition partition : datedPartitions) {
+            if (partition.isWithin(startDate, endDate)) {
+                mergeStatistics(custStatisticsMap, copyStatistics(partition.getStatistics()));
+            } else if (partition.overlaps(startDate, endDate)) {
+                mergeStatistics(custStatisticsMap, partitionLoader.apply(partition)
+                        .getCustomerStatistics(startDate, endDate, pool, parallelThreshold));
+            }
+        }
+
+        mergeStatistics(custStatisticsMap,
+                writtenStore.getCustomerStatistics(startDate, endDate, pool, parallelThreshold));
+
+        return custStatisticsMap;
+    }
+
+    @Override
+    public int size() {
+        return reservations.size();
+    }
+
+    /**
+     * Get the index of the store holding a reservation.
+     *
+     * @param position The position of the reservation
+     * @return The index of the store, the partitions coming first and the written store last
+     */
+    private int getStoreIndex(int position) {
+        // The last store starting at or before the position
+        int index = Arrays.binarySearch(offsets, position);
+        index = index >= 0 ? index : -index - 2;
+
+        while (offsets[index + 1] == position) {
+            // Skip empty stores starting at the same position
+            index++;
+        }
+
+        return index;
+    }
+
+    /**
+     * Get a store by index, the partitions coming first and the written store last.
+     *
+     * @param index
+     * @return The store
+     */
+    private ReservationStore getStore(int index) {
+        return index < partitions.size() ? partitionLoader.apply(partitions.get(index)) : writtenStore;
+    }
+
+    /**
+     * Copy the rollup of a partition, which is never modified.
+     *
+     * @param statistics
+     * @return A new map of new statistics
+     */
+    private static Map<String, CustomerStatistics> copyStatistics(Map<String, CustomerStatistics> statistics) {
+        Map<String, CustomerStatistics> custStatisticsMap = new HashMap<>();
+
+        for (CustomerStatistics customerStatistics : statistics.values()) {
+            CustomerStatistics copy = new CustomerStatistics(customerStatistics.getGuestId(),
+                    customerStatistics.getName());
+            copy.merge(customerStatistics);
+            custStatisticsMap.put(copy.getGuestId(), copy);
+        }
+
+        return custStatisticsMap;
+    }
+
+    /**
+     * Merge the statistics of a later store into those of the earlier ones.
+     *
+     * @param custStatisticsMap The statistics merged into, taking over the other statistics of customers it lacks
+     * @param other             Statistics owned by the caller, which may be modified
+     */
+    private static void mergeStatistics(Map<String, CustomerStatistics> custStatisticsMap,
+                                        Map<String, CustomerStatistics> other) {
+        for (CustomerStatistics statistics : other.values()) {
+            custStatisticsMap.merge(statistics.getGuestId(), statistics, (earlier, later) -> {
+                earlier.merge(later);
+                return earlier;
+            });
+        }
+    }
+
+    /**
+     * A read-only iterator over the reservations, holding on to the store it is in, so each store is fetched once
+     * for as long as the iterator stays in it.
+     */
+    private class StoreIterator implements ListIterator<Reservation> {
+
+        private int position;
+
+        // The index of the store held, or -1 before any
+        private int index = -1;
+
+        private List<Reservation> storeReservations;
+
+        private StoreIterator(int position) {
+            this.position = position;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < size();
+        }
+
+        @Override
+        public Reservation next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return get(position++);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return position > 0;
+        }
+
+        @Override
+        public Reservation previous() {
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+
+            return get(--position);
+        }
+
+        @Override
+        public int nextIndex() {
+            return position;
+        }
+
+        @Override
+        public int previousIndex() {
+            return position - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(Reservation reservation) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(Reservation reservation) {
+            throw new UnsupportedOperationException();
+        }
+
+        private Reservation get(int position) {
+            if (index < 0 || position < offsets[index] || position >= offsets[index + 1]) {
+                index = getStoreIndex(position);
+                storeReservations = getStore(index).getReservations();
+            }
+
+            return storeReservations.get(position - offsets[index]);
+        }
+    }
+
+    /**
+     * A partition of the datasource, with the range of scheduled dates it holds, its size and its rollup, without its
+     * reservations.
+     */
+    @Getter
+    public static class Partition {
+
+        private final Path path;
+
+        private final int firstEpochDay;
+
+        private final int lastEpochDay;
+
+        private final int size;
+
+        // The statistics of each customer over the whole partition, never modified
+        private final Map<String, CustomerStatistics> statistics;
+
+        /**
+         * Describe a partition from its loaded store.
+         *
+         * @param path          The partition file
+         * @param store
+         * @param firstEpochDay The earliest scheduled epoch day in the partition
+         * @param lastEpochDay  The latest scheduled epoch day in the partition, before the first for no reservation
+         */
+        public Partition(Path path, ReservationStore store, int firstEpochDay, int lastEpochDay) {
+            this(path, firstEpochDay, lastEpochDay, store.size(),
+                    store.getCustomerStatistics(null, null, null, Integer.MAX_VALUE));
+        }
+
+        /**
+         * Describe a partition from its stored description, without loading it.
+         *
+         * @param path          The partition file
+         * @param firstEpochDay The earliest scheduled epoch day in the partition
+         * @param lastEpochDay  The latest scheduled epoch day in the partition, before the first for no reservation
+         * @param size          The number of reservations in the partition
+         * @param statistics    The statistics of each customer over the whole partition
+         */
+        public Partition(Path path, int firstEpochDay, int lastEpochDay, int size,
+                         Map<String, CustomerStatistics> statistics) {
+            this.path = path;
+            this.firstEpochDay = firstEpochDay;
+            this.lastEpochDay = lastEpochDay;
+            this.size = size;
+            this.statistics = Collections.unmodifiableMap(statistics);
+        }
+
+        /**
+         * Check whether the partition may hold reservations within a time period.
+         *
+         * @param startDate The inclusive start of the period, or null for no lower bound
+         * @param endDate   The inclusive end of the period, or null for no upper bound
+         * @return false if the partition holds no reservation within the period
+         */
+        public boolean overlaps(LocalDate startDate, LocalDate endDate) {
+            return firstEpochDay <= lastEpochDay
+                    && (startDate == null || lastEpochDay >= startDate.toEpochDay())
+                    && (endDate == null || firstEpochDay <= endDate.toEpochDay());
+        }
+
+        /**
+         * Check whether every reservation of the partition is within a time period.
+         *
+         * @param startDate The inclusive start of the period, or null for no lower bound
+         * @param endDate   The inclusive end of the period, or null for no upper bound
+         * @return true if the partition holds reservations within the period only
+         */
+        public boolean isWithin(LocalDate startDate, LocalDate endDate) {
+            return (startDate == null || firstEpochDay >= startDate.toEpochDay())
+                    && (endDate == null || lastEpochDay <= endDate.toEpochDay());
+        }
+
+        @Override
+        public String toString() {
+            return path.getFileName().toString();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.somecompany.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The location of the reservation datasource named by the <code>dataSource</code> property.<br/>
+ * A value starting with <code>file:</code> refers to a file on the filesystem, anything else to a classpath resource.
+ * <br/>
+ * A datasource which is a directory is partitioned: each <code>.json</code> file in it is a partition holding a JSON
+ * array of reservations and each <code>.ndjson</code> file one holding a reservation per line, e.g. one file per
+ * scheduled month. Partitions are in file name order.
+ *
+ * @author patrick
+ */
+@Component
+public class ReservationDataSource {
+
+    private static final String FILE_PREFIX = "file:";
+
+    private static final String JSON_EXTENSION = ".json";
+
+    private static final String NDJSON_EXTENSION = ".ndjson";
+
+    @Value("${dataSource}")
+    private String dataSource;
+
+    /**
+     * Open the datasource for reading.
+     *
+     * @return An input stream over the datasource content
+     * @throws IOException
+     */
+    public InputStream open() throws IOException {
+        if (dataSource.startsWith(FILE_PREFIX)) {
+            return Files.newInputStream(Paths.get(dataSource.substring(FILE_PREFIX.length())));
+        }
+
+        InputStream inputStream = ReservationDataSource.class.getResourceAsStream(dataSource);
+
+        if (inputStream == null) {
+            throw new FileNotFoundException("Reservation datasource not found: " + dataSource);
+        }
+
+        return inputStream;
+    }
+
+    /**
+     * Check whether the datasource is a directory of partitions.
+     *
+     * @return true if the datasource is a directory
+     */
+    public boolean isPartitioned() {
+        Optional<Path> path = getPath();
+
+        return path.isPresent() && Files.isDirectory(path.get());
+    }
+
+    /**
+     * List the partition files of a partitioned datasource.
+     *
+     * @return The paths of the partitions, in file name order
+     * @throws IOException
+     */
+    public List<Path> getPartitionPaths() throws IOException {
+        Path directory = getPath().orElseThrow(
+                () -> new FileNotFoundException("Reservation datasource is not a directory: " + dataSource));
+
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> Files.isRegularFile(path) && (isNdjson(path)
+                    || path.getFileName().toString().endsWith(JSON_EXTENSION))).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Check whether a partition holds a reservation per line rather than a JSON array.
+     *
+     * @param partitionPath
+     * @return true for a <code>.ndjson</code> file
+     */
+    public static boolean isNdjson(Path partitionPath) {
+        return partitionPath.getFileName().toString().endsWith(NDJSON_EXTENSION);
+    }
+
+    /**
+     * Get the filesystem path of the datasource, if it has one.
+     *
+     * @return The datasource path, or empty if the datasource is not backed by a file (e.g. packaged in a jar)
+     */
+    public Optional<Path> getPath() {
+        if (dataSource.startsWith(FILE_PREFIX)) {
+            return Optional.of(Paths.get(dataSource.substring(FILE_PREFIX.length())).toAbsolutePath());
+        }
+
+        URL url = ReservationDataSource.class.getResource(dataSource);
+
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(Paths.get(url.toURI()));
+        } catch (URISyntaxException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return dataSource;
+    }
+}
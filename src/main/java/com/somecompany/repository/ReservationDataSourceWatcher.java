@@ -0,0 +1,161 @@
+package com.somecompany.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the reservation datasource file and reloads the repository in the background whenever it changes.<br/>
+ * Enabled by <code>reservation.reload.enabled</code>. Only datasources backed by a file, or by a directory of
+ * partitions, can be watched.
+ *
+ * @author patrick
+ */
+@Component
+@Slf4j
+public class ReservationDataSourceWatcher {
+
+    @Autowired
+    private ReservationDataSource reservationDataSource;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Value("${reservation.reload.enabled:false}")
+    private boolean reloadEnabled;
+
+    // How long the file must stay unchanged before it is reloaded, so a file still being written is not parsed
+    @Value("${reservation.reload.quiet-period:500ms}")
+    private Duration quietPeriod;
+
+    private WatchService watchService;
+
+    /**
+     * Start watching the datasource file.
+     *
+     * @throws IOException
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!reloadEnabled) {
+            return;
+        }
+
+        Optional<Path> dataSourcePath = reservationDataSource.getPath();
+
+        if (!dataSourcePath.isPresent()) {
+            log.warn("Reservation datasource " + reservationDataSource + " is not a file, hot reload is disabled");
+            return;
+        }
+
+        Path file = dataSourcePath.get();
+
+        watchService = file.getFileSystem().newWatchService();
+
+        if (Files.isDirectory(file)) {
+            // Any partition added, changed or removed changes a partitioned datasource
+            file.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } else {
+            // Watch the directory, since files are often replaced by a rename rather than modified in place
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+
+        Thread watchThread = new Thread(() -> watch(file), "reservation-datasource-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+
+        log.info("Watching reservation datasource " + file + " for changes");
+    }
+
+    /**
+     * Stop watching the datasource file.
+     *
+     * @throws IOException
+     */
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Wait for changes to the datasource file and reload the repository once the file has settled.
+     *
+     * @param file
+     */
+    private void watch(Path file) {
+        try {
+            while (true) {
+                boolean changed = isDataSourceChanged(watchService.take(), file);
+
+                // Keep draining events until the directory has been quiet for the quiet period
+                WatchKey watchKey;
+                while ((watchKey = watchService.poll(quietPeriod.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    changed |= isDataSourceChanged(watchKey, file);
+                }
+
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Application is shutting down
+        }
+    }
+
+    /**
+     * Check whether any of the events of the watch key concern the datasource file.
+     *
+     * @param watchKey
+     * @param file
+     * @return true if the datasource file, or a partition of a partitioned datasource, was created or modified
+     */
+    private boolean isDataSourceChanged(WatchKey watchKey, Path file) {
+        boolean changed = false;
+
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+            // Events of a watched partitioned datasource all concern its partitions
+            if (file.equals(watchKey.watchable()) || file.getFileName().equals(event.context())
+                    || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            }
+        }
+
+        watchKey.reset();
+
+        return changed;
+    }
+
+    /**
+     * Reload the repository, keeping the current snapshot if the new file cannot be parsed.
+     */
+    private void reload() {
+        try {
+            reservationRepository.reload();
+        } catch (Exception e) {
+            log.error("\n##################################################\n"
+                    + "Failed to reload reservation datasource, keeping the current reservations:\n"
+                    + e.getLocalizedMessage() + "\n##################################################");
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package com.somecompany.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.somecompany.model.Reservation;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only log of the reservations written through the API, kept apart from the read-only datasource.
+ * <br/>
+ * Each write is appended as a single record, its length and CRC32 checksum followed by the reservations as JSON, so a
+ * record torn by a crash is detected and dropped on recovery. Writes are committed by a single writer thread which
+ * appends every write waiting at the time and forces them to disk with one fsync, so concurrent writers share the
+ * cost of syncing. A group whose reservations cannot be applied is truncated away again, so a write reported as failed
+ * is never replayed.<br/>
+ * Once enough reservations have been logged, relative to those already compacted, the log is compacted in the
+ * background into a binary snapshot in the format of {@link ReservationSnapshotStore}, while writes keep being
+ * appended. The snapshot records the position in the log it covers, and the log is then started afresh with the
+ * records appended since. Both files carry a generation, which tells on recovery whether a crash happened after the
+ * snapshot was written but before the log was started afresh.
+ *
+ * @author patrick
+ */
+@Component
+@Slf4j
+public class ReservationLog {
+
+    // "RLG1"
+    private static final int MAGIC = 0x524c4731;
+
+    private static final int VERSION = 1;
+
+    // Magic, version and generation
+    private static final int HEADER_SIZE = 16;
+
+    // Length and checksum of a record
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    // Recorded in the compacted snapshot, in place of a datasource
+    private static final String SNAPSHOT_SOURCE = "reservation log";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ReservationReader reservationReader;
+
+    @Autowired
+    private ReservationSnapshotStore snapshotStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Without the log, written reservations are only held in memory and are lost on restart
+    @Value("${reservation.log.enabled:true}")
+    private boolean logEnabled;
+
+    @Value("${reservation.log.path:reservations.log}")
+    private String logPath;
+
+    // The number of logged reservations which triggers a compaction
+    @Value("${reservation.log.compaction-threshold:10000}")
+    private int compactionThreshold;
+
+    // The fraction of the reservations in the snapshot above which the logged reservations trigger a compaction, if
+    // more than the compaction threshold
+    @Value("${reservation.log.compaction-ratio:0.5}")
+    private double compactionRatio;
+
+    private final BlockingQueue<PendingWrite> pendingWrites = new LinkedBlockingQueue<>();
+
+    private FileChannel channel;
+
+    // The generation of the log file, one more than the number of compactions
+    private long generation;
+
+    // The number of reservations in the log file
+    private int logCount;
+
+    // The number of reservations in the compacted snapshot
+    private int snapshotCount;
+
+    private Consumer<List<Reservation>> applier;
+
+    private Thread writerThread;
+
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(
+            new CustomizableThreadFactory("reservation-log-compactor-"));
+
+    // The compaction in progress or the last one, guarded by the log
+    private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+
+    /**
+     * Read back every reservation written so far, from the compacted snapshot and then the log, and open the log for
+     * appending.<br/>
+     * A torn or corrupted record at the end of the log, left by a crash while it was appended, is truncated away.
+     *
+     * @return The written reservations, in the order written
+     * @throws IOException
+     */
+    public synchronized List<Reservation> recover() throws IOException {
+        if (!logEnabled || channel != null) {
+            // Only recovered once, the reservations written since are held by the repository
+            return Collections.emptyList();
+        }
+
+        Path path = Paths.get(logPath).toAbsolutePath();
+        Path snapshotPath = getSnapshotPath(path);
+
+        // The generation of the snapshot and the position it covers in the log of the previous generation
+        Optional<long[]> snapshotVersion = snapshotStore.readVersion(snapshotPath, SNAPSHOT_SOURCE);
+        List<Reservation> reservationList = new ArrayList<>(snapshotVersion.isPresent()
+                ? snapshotStore.readFile(snapshotPath, SNAPSHOT_SOURCE, snapshotVersion.get()[0],
+                snapshotVersion.get()[1])
+                .orElseThrow(() -> new IOException("Unreadable reservation log snapshot " + snapshotPath))
+                : Collections.emptyList());
+
+        generation = snapshotVersion.map(version -> version[0]).orElse(0L);
+        snapshotCount = reservationList.size();
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        // Only an empty file is taken for a new log, so a path mistakenly set to another file never overwrites it
+        long logGeneration = channel.size() > 0 ? readGeneration(path) : generation - 1;
+
+        if (logGeneration == generation) {
+            replay(reservationList, HEADER_SIZE);
+        } else if (logGeneration == generation - 1) {
+            // A new log, or one compacted into the snapshot before a crash, of which only the records appended after
+            // the compacted position are kept
+            long compactedPosition = snapshotVersion.map(version -> version[1]).orElse((long) HEADER_SIZE);
+
+            replay(reservationList, compactedPosition);
+            restart(compactedPosition);
+        } else {
+            closeUnrecovered();
+            throw new IOException("Reservation log " + path + " does not match its snapshot " + snapshotPath);
+        }
+
+        log.info("Recovered " + reservationList.size() + " written reservations from " + path);
+
+        return reservationList;
+    }
+
+    /**
+     * Start committing writes, each applied in the order committed once it is durable.
+     *
+     * @param applier Makes the reservations of committed writes visible to readers
+     */
+    public synchronized void start(Consumer<List<Reservation>> applier) {
+        this.applier = applier;
+
+        if (!logEnabled) {
+            return;
+        }
+
+        writerThread = new Thread(this::commitWrites, "reservation-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Append reservations to the log, waiting until they are durable and visible to readers.
+     *
+     * @param reservationList
+     * @throws IOException If the log cannot be written
+     */
+    public void append(List<Reservation> reservationList) throws IOException {
+        if (!logEnabled) {
+            applier.accept(reservationList);
+            return;
+        }
+
+        PendingWrite pendingWrite = new PendingWrite(reservationList, objectMapper.writeValueAsBytes(reservationList));
+        pendingWrites.add(pendingWrite);
+
+        try {
+            pendingWrite.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the reservation log");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IOException("Unable to write the reservation log", e.getCause());
+        }
+    }
+
+    /**
+     * Wait for the compaction in progress, if any, e.g. before inspecting the log files.
+     */
+    public void awaitCompaction() {
+        CompletableFuture<Void> currentCompaction;
+
+        synchronized (this) {
+            currentCompaction = compaction;
+        }
+
+        currentCompaction.join();
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+
+        compactionExecutor.shutdownNow();
+
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Commit the pending writes in groups until interrupted.
+     */
+    private void commitWrites() {
+        List<PendingWrite> group = new ArrayList<>();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                group.add(pendingWrites.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            // Every write which arrived while the previous group was being synced joins this group
+            pendingWrites.drainTo(group);
+
+            commit(group);
+            group.clear();
+        }
+
+        IOException closed = new IOException("The reservation log is closed");
+        pendingWrites.forEach(pendingWrite -> pendingWrite.future.completeExceptionally(closed));
+    }
+
+    /**
+     * Append a group of writes with a single sync, then apply them.<br/>
+     * A group which cannot be applied is truncated away, as its writers are told it failed.
+     *
+     * @param group
+     */
+    private synchronized void commit(List<PendingWrite> group) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<Reservation> reservationList = new ArrayList<>();
+        // The end of the group in the log
+        long end;
+
+        try {
+            long position = channel.size();
+
+            try {
+                for (PendingWrite pendingWrite : group) {
+                    writeRecord(pendingWrite.payload);
+                    reservationList.addAll(pendingWrite.reservationList);
+                }
+
+                channel.force(false);
+                applier.accept(reservationList);
+            } catch (IOException | RuntimeException e) {
+                // Leave no partial or unapplied group behind
+                channel.truncate(position);
+                channel.force(false);
+                throw e;
+            }
+
+            end = channel.size();
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to commit " + group.size() + " reservation writes: " + e);
+            group.forEach(pendingWrite -> pendingWrite.future.completeExceptionally(e));
+
+            return;
+        }
+
+        sample.stop(Timer.builder("reservation.log.commit")
+                .description("Time taken to append and sync a group of reservation writes").register(meterRegistry));
+        DistributionSummary.builder("reservation.log.commit.writes")
+                .description("Number of reservation writes synced together").register(meterRegistry)
+                .record(group.size());
+
+        logCount += reservationList.size();
+
+        // Compacting no sooner than the log grows by a fraction of the snapshot keeps the cost of rewriting the
+        // snapshot proportional to the reservations logged
+        if (logCount >= Math.max(compactionThreshold, (long) (compactionRatio * snapshotCount))
+                && compaction.isDone()) {
+            // Started before the writers are released, so a writer waiting for the compaction finds it in progress
+            long compactedGeneration = generation;
+
+            compaction = CompletableFuture.runAsync(() -> compact(end, compactedGeneration), compactionExecutor);
+        }
+
+        group.forEach(pendingWrite -> pendingWrite.future.complete(null));
+    }
+
+    /**
+     * Write the compacted snapshot of the next generation, with the reservations of the current snapshot and of the
+     * log up to a position, then start a log of the next generation with the records appended since.<br/>
+     * Runs in the background while writes are appended. Only starting the new log holds the log, for as long as it
+     * takes to copy the records appended during the compaction. A failure leaves the log in place, to be compacted
+     * after a later commit.
+     *
+     * @param compactedPosition   The end of the last record compacted
+     * @param compactedGeneration The generation of the log when the compaction started
+     */
+    private void compact(long compactedPosition, long compactedGeneration) {
+        Path path = Paths.get(logPath).toAbsolutePath();
+        Path snapshotPath = getSnapshotPath(path);
+
+        try {
+            Optional<long[]> snapshotVersion = snapshotStore.readVersion(snapshotPath, SNAPSHOT_SOURCE);
+            List<Reservation> reservationList = new ArrayList<>(snapshotVersion.isPresent()
+                    ? snapshotStore.readFile(snapshotPath, SNAPSHOT_SOURCE, compactedGeneration,
+                    snapshotVersion.get()[1])
+                    .orElseThrow(() -> new IOException("Unreadable reservation log snapshot " + snapshotPath))
+                    : Collections.emptyList());
+            int snapshotCount = reservationList.size();
+
+            FileChannel compactedChannel;
+
+            synchronized (this) {
+                compactedChannel = channel;
+            }
+
+            readRecords(compactedChannel, HEADER_SIZE, compactedPosition, reservationList);
+
+            // Once the snapshot of the next generation is in place, the log is only needed after the compacted position
+            snapshotStore.writeFile(snapshotPath, SNAPSHOT_SOURCE, compactedGeneration + 1, compactedPosition,
+                    reservationList);
+
+            synchronized (this) {
+                generation = compactedGeneration + 1;
+                logCount -= reservationList.size() - snapshotCount;
+                this.snapshotCount = reservationList.size();
+                restart(compactedPosition);
+            }
+
+            log.info("Compacted " + reservationList.size() + " written reservations into " + snapshotPath);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to compact reservation log " + path + ": " + e);
+        }
+    }
+
+    /**
+     * Read every record of the log from a position, truncating the log after the last intact one.
+     *
+     * @param reservationList Receives the reservations of each record
+     * @param position        The start of the first record
+     * @throws IOException
+     */
+    private void replay(List<Reservation> reservationList, long position) throws IOException {
+        long size = channel.size();
+        int countBefore = reservationList.size();
+
+        if (position < size) {
+            position = readRecords(channel, position, size, reservationList);
+
+            if (position < size) {
+                log.warn("Truncating reservation log after a torn or corrupted record at " + position);
+                channel.truncate(position);
+            }
+        }
+
+        channel.position(channel.size());
+        logCount = reservationList.size() - countBefore;
+    }
+
+    /**
+     * Read the intact records of a log between two positions.
+     *
+     * @param logChannel
+     * @param position        The start of the first record
+     * @param end             The end of the records
+     * @param reservationList Receives the reservations of each record
+     * @return The end of the last intact record
+     * @throws IOException
+     */
+    private long readRecords(FileChannel logChannel, long position, long end, List<Reservation> reservationList)
+            throws IOException {
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+        while (position + RECORD_HEADER_SIZE <= end) {
+            recordHeader.clear();
+            logChannel.read(recordHeader, position);
+            recordHeader.flip();
+
+            int length = recordHeader.getInt();
+            int checksum = recordHeader.getInt();
+
+            if (length < 0 || position + RECORD_HEADER_SIZE + length > end) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            logChannel.read(payload, position + RECORD_HEADER_SIZE);
+
+            if (checksum != checksum(payload.array())) {
+                break;
+            }
+
+            reservationReader.read(new ByteArrayInputStream(payload.array()), reservationList::add);
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        return position;
+    }
+
+    /**
+     * Replace the log with one of the current generation holding the records of the log from a position on.
+     *
+     * @param position The start of the first record kept, at or after the end of the log to keep none
+     * @throws IOException
+     */
+    private void restart(long position) throws IOException {
+        Path path = Paths.get(logPath).toAbsolutePath();
+        Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(generation);
+        header.flip();
+
+        long size = channel.size();
+
+        try {
+            try (FileChannel tempChannel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                tempChannel.write(header);
+
+                while (position < size) {
+                    position += channel.transferTo(position, size - position, tempChannel);
+                }
+
+                tempChannel.force(true);
+            }
+
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    /**
+     * Read the generation from the header of the log.
+     *
+     * @param path The path of the log, to report
+     * @return The generation
+     * @throws IOException If the file is not a log of this version, which is left as it is
+     */
+    private long readGeneration(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        if (channel.read(header, 0) < HEADER_SIZE) {
+            closeUnrecovered();
+            throw new IOException("Not a reservation log: " + path);
+        }
+
+        header.flip();
+
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            closeUnrecovered();
+            throw new IOException("Not a reservation log of version " + VERSION + ": " + path);
+        }
+
+        return header.getLong();
+    }
+
+    /**
+     * Close a log which cannot be recovered, so it is neither appended to nor taken as recovered.
+     *
+     * @throws IOException
+     */
+    private void closeUnrecovered() throws IOException {
+        channel.close();
+        channel = null;
+    }
+
+    private void writeRecord(byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length).putInt(checksum(payload)).put(payload);
+        record.flip();
+
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        return (int) crc.getValue();
+    }
+
+    private static Path getSnapshotPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".snapshot");
+    }
+
+    /**
+     * A write waiting to be committed.
+     */
+    private static class PendingWrite {
+
+        private final List<Reservation> reservationList;
+
+        // The reservations as a JSON array
+        private final byte[] payload;
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingWrite(List<Reservation> reservationList, byte[] payload) {
+            this.reservationList = reservationList;
+            this.payload = payload;
+        }
+    }
+}
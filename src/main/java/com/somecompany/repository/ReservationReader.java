@@ -0,0 +1,87 @@
+package com.somecompany.repository;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.somecompany.model.Reservation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader for a JSON array of reservations, or for newline-delimited reservations.<br/>
+ * Reservations are parsed one at a time off the token stream and handed to a consumer, so the reader itself needs
+ * memory for a single reservation only, whatever the size of the input.
+ *
+ * @author patrick
+ */
+@Component
+public class ReservationReader {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ObjectReader reservationReader;
+
+    @PostConstruct
+    public void init() {
+        reservationReader = objectMapper.readerFor(Reservation.class);
+    }
+
+    /**
+     * Read every reservation of the input in order.
+     *
+     * @param inputStream A JSON array of reservations
+     * @param consumer    Receives each reservation as soon as it is parsed
+     * @return The number of reservations read
+     * @throws IOException
+     */
+    public long read(InputStream inputStream, Consumer<Reservation> consumer) throws IOException {
+        long count = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected a JSON array of reservations");
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(reservationReader.readValue(parser));
+                count++;
+            }
+
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Expected a reservation object or the end of the array");
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Read every reservation of newline-delimited JSON in order.
+     *
+     * @param inputStream One reservation object per line
+     * @param consumer    Receives each reservation as soon as it is parsed
+     * @return The number of reservations read
+     * @throws IOException
+     */
+    public long readLines(InputStream inputStream, Consumer<Reservation> consumer) throws IOException {
+        long count = 0;
+
+        try (MappingIterator<Reservation> iterator = reservationReader.readValues(inputStream)) {
+            while (iterator.hasNextValue()) {
+                consumer.accept(iterator.nextValue());
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,67 @@
+package com.somecompany.repository;
+
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Reservation;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The storage unit which holds the reservation records from the datasource, and those written since.
+ *
+ * @author patrick
+ */
+public interface ReservationRepository {
+
+    /**
+     * Get all reservation records held by the repository.
+     *
+     * @return An unmodifiable list of all reservations, in datasource order
+     */
+    List<Reservation> findAll();
+
+    /**
+     * Get the reservation records scheduled within a time period.
+     *
+     * @param startDate The inclusive start of the period, or null for no lower bound
+     * @param endDate   The inclusive end of the period, or null for no upper bound
+     * @return A list of the matching reservations, in datasource order
+     */
+    List<Reservation> findByScheduledDate(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Get the statistics of each customer with a reservation scheduled within a time period.
+     *
+     * @param startDate The inclusive start of the period, or null for no lower bound
+     * @param endDate   The inclusive end of the period, or null for no upper bound
+     * @return A new map storing unique customers by guest id, with the value holding their reservation statistics
+     */
+    Map<String, CustomerStatistics> findCustomerStatistics(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Get the number of reservation records held by the repository.
+     *
+     * @return The number of reservations
+     */
+    long count();
+
+    /**
+     * Durably add reservations after those held by the repository.<br/>
+     * Returns once the reservations are persisted and visible to readers.
+     *
+     * @param reservationList
+     * @throws IOException If the reservations cannot be persisted
+     */
+    void saveAll(List<Reservation> reservationList) throws IOException;
+
+    /**
+     * Re-read the datasource and atomically replace the reservations held by the repository, keeping the written
+     * ones.<br/>
+     * Readers keep seeing the previous reservations until the new ones are fully loaded.
+     *
+     * @throws IOException
+     */
+    void reload() throws IOException;
+}
@@ -0,0 +1,170 @@
+package com.somecompany.repository;
+
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Reservation;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An immutable, fully loaded view of the reservation datasource, held as a list of reservation objects.<br/>
+ * A snapshot is never modified once published, so readers holding a reference always see a consistent dataset.
+ *
+ * @author patrick
+ */
+public class ReservationSnapshot implements ReservationStore {
+
+    public static final ReservationSnapshot EMPTY = new ReservationSnapshot(Collections.emptyList(), 0);
+
+    // The reservations in datasource order
+    @Getter
+    private final List<Reservation> reservations;
+
+    // Time taken to load the snapshot, in milliseconds
+    @Getter
+    private final long loadTimeMillis;
+
+    // Scheduled dates as epoch days, sorted ascending
+    private final int[] sortedEpochDays;
+
+    // Datasource positions of the reservations, in the same order as sortedEpochDays
+    private final int[] sortedPositions;
+
+    // Per-customer statistics rolled up by day and month
+    private final CustomerStatisticsIndex statisticsIndex;
+
+    public ReservationSnapshot(List<Reservation> reservations, long loadTimeMillis) {
+        this.reservations = Collections.unmodifiableList(reservations);
+        this.loadTimeMillis = loadTimeMillis;
+
+        // Sort (epoch day, position) pairs packed into a primitive long, so equal days keep datasource order
+        long[] keys = new long[reservations.size()];
+
+        for (int position = 0; position < keys.length; position++) {
+            long epochDay = reservations.get(position).getScheduled_epoch_day();
+            keys[position] = (epochDay << 32) | position;
+        }
+
+        Arrays.sort(keys);
+
+        this.sortedEpochDays = new int[keys.length];
+        this.sortedPositions = new int[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            sortedEpochDays[i] = (int) (keys[i] >> 32);
+            sortedPositions[i] = (int) keys[i];
+        }
+
+        // Reservations of the same guest share a single guest instance from the dictionary
+        GuestDictionary guestDictionary = new GuestDictionary();
+
+        for (Reservation reservation : reservations) {
+            if (reservation.getGuest() != null) {
+                reservation.setGuest(guestDictionary.intern(reservation.getGuest()));
+            }
+        }
+
+        List<Reservation> sortedReservations = new ArrayList<>(keys.length);
+
+        for (int position : sortedPositions) {
+            sortedReservations.add(reservations.get(position));
+        }
+
+        this.statisticsIndex = new CustomerStatisticsIndex(sortedReservations, guestDictionary);
+    }
+
+    @Override
+    public int size() {
+        return reservations.size();
+    }
+
+    /**
+     * Get the reservations scheduled within a time period using the date index.
+     *
+     * @param startDate The inclusive start of the period, or null for no lower bound
+     * @param endDate   The inclusive end of the period, or null for no upper bound
+     * @return A list of the matching reservations, in datasource order
+     */
+    @Override
+    public List<Reservation> findByScheduledDate(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null && endDate == null) {
+            return reservations;
+        }
+
+        int from = startDate == null ? 0 : lowerBound(sortedEpochDays, startDate.toEpochDay());
+        int to = endDate == null ? sortedEpochDays.length : lowerBound(sortedEpochDays, endDate.toEpochDay() + 1);
+
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+
+        // Restore datasource order of the matches
+        int[] positions = Arrays.copyOfRange(sortedPositions, from, to);
+        Arrays.sort(positions);
+
+        List<Reservation> filteredList = new ArrayList<>(positions.length);
+
+        for (int position : positions) {
+            filteredList.add(reservations.get(position));
+        }
+
+        return filteredList;
+    }
+
+    /**
+     * Get the statistics of each customer with a reservation within a time period from the rollups.
+     *
+     * @param startDate The inclusive start of the period, or null for no lower bound
+     * @param endDate   The inclusive end of the period, or null for no upper bound
+     * @return A map storing unique customers by guest id, with the value holding their reservation statistics
+     */
+    public Map<String, CustomerStatistics> getCustomerStatistics(LocalDate startDate, LocalDate endDate) {
+        return statisticsIndex.getCustomerStatistics(startDate, endDate);
+    }
+
+    /**
+     * Get the statistics of each customer with a reservation within a time period from the rollups, merging them in
+     * parallel over periods holding more reservations than the threshold.
+     *
+     * @param startDate         The inclusive start of the period, or null for no lower bound
+     * @param endDate           The inclusive end of the period, or null for no upper bound
+     * @param pool              The pool to merge on, or null to always merge sequentially
+     * @param parallelThreshold The number of reservations up to which the rollups are merged sequentially
+     * @return A map storing unique customers by guest id, with the value holding their reservation statistics
+     */
+    @Override
+    public Map<String, CustomerStatistics> getCustomerStatistics(LocalDate startDate, LocalDate endDate,
+                                                                 ForkJoinPool pool, int parallelThreshold) {
+        return statisticsIndex.getCustomerStatistics(startDate, endDate, pool, parallelThreshold);
+    }
+
+    /**
+     * Binary search for the first index whose epoch day is not before the given day.
+     *
+     * @param sortedDays Epoch days sorted ascending
+     * @param epochDay
+     * @return The index of the first epoch day &gt;= epochDay, or the length of sortedDays if there is none
+     */
+    static int lowerBound(int[] sortedDays, long epochDay) {
+        int low = 0;
+        int high = sortedDays.length;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (sortedDays[mid] < epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+}
@@ -0,0 +1,732 @@
+package com.somecompany.repository;
+
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Guest;
+import com.somecompany.model.Reservation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Compact binary columnar snapshot of the reservations loaded from the datasource, written after each load so the
+ * next startup can skip parsing the JSON.<br/>
+ * Guests are stored once in a dictionary and referenced by ordinal, and the scheduled date, party size, guest and
+ * spend are stored as primitive columns. Each datasource has a snapshot file of its own, named after its absolute path,
+ * which records the datasource's path, modification time and size, and is only read back while all three still match.
+ * It is read through a memory mapped buffer.<br/>
+ * The partitions of a partitioned datasource each have a description file of their own, checked the same way, which
+ * holds the range of scheduled dates, the size and the customer statistics of the partition, so a partition need not
+ * be parsed until its reservations are needed.
+ *
+ * @author patrick
+ */
+@Component
+@Slf4j
+public class ReservationSnapshotStore {
+
+    // "RSV1"
+    private static final int MAGIC = 0x52535631;
+
+    private static final int VERSION = 2;
+
+    // "RSP1", of a partition description
+    private static final int PARTITION_MAGIC = 0x52535031;
+
+    // Marks a null scheduled date, spend or guest in a column
+    static final int NULL_VALUE = Integer.MIN_VALUE;
+
+    @Autowired
+    private ReservationDataSource reservationDataSource;
+
+    @Value("${reservation.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
+    // Holds the snapshot of each datasource
+    @Value("${reservation.snapshot.directory:${java.io.tmpdir}}")
+    private String snapshotDirectory;
+
+    /**
+     * Read the reservations back from the snapshot, if it was written from the current content of the datasource.
+     *
+     * @return The reservations in datasource order, or empty if there is no usable snapshot
+     */
+    public Optional<List<Reservation>> read() {
+        return read(ReservationSnapshotStore::readReservations);
+    }
+
+    /**
+     * Read the snapshot straight into the columns of a columnar store, without creating reservation objects.
+     *
+     * @return A builder holding the reservations in datasource order, or empty if there is no usable snapshot
+     */
+    public Optional<ColumnarReservationStore.Builder> readColumns() {
+        return read(ReservationSnapshotStore::readColumns);
+    }
+
+    /**
+     * Write the snapshot of reservations just loaded from the datasource.<br/>
+     * A failure is logged and otherwise ignored, as the datasource can always be parsed again.
+     *
+     * @param reservationList The reservations in datasource order
+     */
+    public void write(List<Reservation> reservationList) {
+        write(new ListColumns(reservationList));
+    }
+
+    /**
+     * Write the snapshot of reservations just loaded from the datasource into a columnar store, straight from its
+     * columns.
+     *
+     * @param store The store, holding the reservations of the datasource ahead of any other
+     * @param count The number of reservations loaded from the datasource
+     */
+    public void write(ColumnarReservationStore store, int count) {
+        write(store.getSourceColumns(count));
+    }
+
+    /**
+     * Read back the description of a partition, if it was written from the current content of the partition file.
+     *
+     * @param partitionPath
+     * @return The partition, or empty if there is no usable description
+     */
+    public Optional<PartitionedReservationStore.Partition> readPartition(Path partitionPath) {
+        return read(getSourceFile(partitionPath), SourceFile::getPartitionPath, PARTITION_MAGIC,
+                buffer -> readPartition(buffer, partitionPath));
+    }
+
+    /**
+     * Write the description of a partition just loaded from its file.<br/>
+     * A failure is logged and otherwise ignored, as the partition can always be parsed again.
+     *
+     * @param partition
+     */
+    public void writePartition(PartitionedReservationStore.Partition partition) {
+        write(getSourceFile(partition.getPath()), SourceFile::getPartitionPath, PARTITION_MAGIC,
+                output -> writePartition(output, partition));
+    }
+
+    /**
+     * Read the version and source size of a snapshot file written from a source.
+     *
+     * @param path
+     * @param source The description of the source the snapshot must have been written from
+     * @return The version and the source size, or empty if there is no such file or it was written from another source
+     * @throws IOException If the file cannot be read
+     */
+    Optional<long[]> readVersion(Path path, String source) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return Optional.empty();
+            }
+
+            long[] versionAndSize = {buffer.getLong(), buffer.getLong()};
+
+            return source.equals(getString(buffer)) ? Optional.of(versionAndSize) : Optional.empty();
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Read the reservations back from a snapshot file.
+     *
+     * @param path
+     * @param source     The description of the source the snapshot must have been written from
+     * @param version    The version the snapshot must have, e.g. the modification time of the source
+     * @param sourceSize The size the source must have, 0 if it is not a file
+     * @return The reservations in the order written, or empty if there is no such file or it was written from another
+     * source, version or size
+     * @throws IOException If the file cannot be read
+     */
+    Optional<List<Reservation>> readFile(Path path, String source, long version, long sourceSize)
+            throws IOException {
+        return readFile(path, MAGIC, source, version, sourceSize, ReservationSnapshotStore::readReservations);
+    }
+
+    /**
+     * Write reservations to a snapshot file.<br/>
+     * The snapshot is written to a temporary file and moved into place, so readers never see a partial snapshot.
+     *
+     * @param path
+     * @param source          The description of the source of the reservations
+     * @param version         The version of the source, e.g. its modification time
+     * @param sourceSize      The size of the source, 0 if it is not a file
+     * @param reservationList The reservations, in order
+     * @throws IOException
+     */
+    void writeFile(Path path, String source, long version, long sourceSize, List<Reservation> reservationList)
+            throws IOException {
+        ListColumns columns = new ListColumns(reservationList);
+
+        writeFile(path, MAGIC, source, version, sourceSize, output -> writeColumns(output, columns));
+    }
+
+    /**
+     * Read the snapshot of the datasource, if it was written from its current content.
+     *
+     * @param reader Reads the reservations from the buffer positioned after the header
+     * @return The reservations read, or empty if there is no usable snapshot
+     */
+    private <T> Optional<T> read(Function<ByteBuffer, T> reader) {
+        return read(getSourceFile(), SourceFile::getSnapshotPath, MAGIC, reader);
+    }
+
+    /**
+     * Read a file written from a source file, if it was written from its current content.
+     *
+     * @param sourceFile The source file, or empty if there is none to check against
+     * @param pathGetter Gets the path of the file written from the source file
+     * @param magic      The magic number the file must start with
+     * @param reader     Reads the content from the buffer positioned after the header
+     * @return The content read, or empty if there is no usable file
+     */
+    private <T> Optional<T> read(Optional<SourceFile> sourceFile, Function<SourceFile, Path> pathGetter, int magic,
+                                 Function<ByteBuffer, T> reader) {
+        if (!sourceFile.isPresent()) {
+            return Optional.empty();
+        }
+
+        Path path = pathGetter.apply(sourceFile.get());
+
+        try {
+            // Empty if written by another version or from another source, or the source has changed since
+            return readFile(path, magic, sourceFile.get().path, sourceFile.get().lastModified, sourceFile.get().size,
+                    reader);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable reservation snapshot " + path + ": " + e);
+
+            return Optional.empty();
+        }
+    }
+
+    private void write(Columns columns) {
+        write(getSourceFile(), SourceFile::getSnapshotPath, MAGIC, output -> writeColumns(output, columns));
+    }
+
+    /**
+     * Write a file from a source file.
+     *
+     * @param sourceFile The source file, or empty if there is none to check against
+     * @param pathGetter Gets the path of the file written from the source file
+     * @param magic      The magic number the file starts with
+     * @param writer     Writes the content after the header
+     */
+    private void write(Optional<SourceFile> sourceFile, Function<SourceFile, Path> pathGetter, int magic,
+                       ContentWriter writer) {
+        if (!sourceFile.isPresent()) {
+            return;
+        }
+
+        Path path = pathGetter.apply(sourceFile.get());
+
+        try {
+            writeFile(path, magic, sourceFile.get().path, sourceFile.get().lastModified, sourceFile.get().size,
+                    writer);
+        } catch (IOException | ArithmeticException e) {
+            log.warn("Unable to write reservation snapshot " + path + ": " + e);
+        }
+    }
+
+    private static <T> Optional<T> readFile(Path path, int magic, String source, long version, long sourceSize,
+                                            Function<ByteBuffer, T> reader) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != magic || buffer.getInt() != VERSION || buffer.getLong() != version
+                    || buffer.getLong() != sourceSize || !source.equals(getString(buffer))) {
+                return Optional.empty();
+            }
+
+            return Optional.of(reader.apply(buffer));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static void writeFile(Path path, int magic, String source, long version, long sourceSize,
+                                  ContentWriter writer) throws IOException {
+        Path absolutePath = path.toAbsolutePath();
+        Files.createDirectories(absolutePath.getParent());
+        Path tempPath = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempPath), 1 << 16))) {
+                output.writeInt(magic);
+                output.writeInt(VERSION);
+                output.writeLong(version);
+                output.writeLong(sourceSize);
+                putString(output, source);
+
+                writer.write(output);
+            }
+
+            Files.move(tempPath, absolutePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * Get the size of the snapshot file.
+     *
+     * @return The size in bytes, or 0 if there is no snapshot
+     */
+    public long size() {
+        Optional<SourceFile> sourceFile = getSourceFile();
+
+        try {
+            return sourceFile.isPresent() ? Files.size(sourceFile.get().getSnapshotPath()) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Get the current state of the datasource file, when the snapshot is enabled and can be checked against it.
+     *
+     * @return The datasource file, or empty if the datasource is not backed by a file
+     */
+    private Optional<SourceFile> getSourceFile() {
+        Optional<Path> sourcePath = reservationDataSource.getPath();
+
+        return sourcePath.isPresent() ? getSourceFile(sourcePath.get()) : Optional.empty();
+    }
+
+    /**
+     * Get the current state of a source file, when the snapshot is enabled and can be checked against it.
+     *
+     * @param sourcePath
+     * @return The source file, or empty if it is not a regular file
+     */
+    private Optional<SourceFile> getSourceFile(Path sourcePath) {
+        if (!snapshotEnabled || !Files.isRegularFile(sourcePath)) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(new SourceFile(sourcePath.toAbsolutePath().toString(),
+                    Files.getLastModifiedTime(sourcePath).toMillis(), Files.size(sourcePath)));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Write the range of scheduled dates and the size of a partition, then the statistics of each customer.
+     *
+     * @param output
+     * @param partition
+     * @throws IOException
+     */
+    private static void writePartition(DataOutputStream output, PartitionedReservationStore.Partition partition)
+            throws IOException {
+        output.writeInt(partition.getFirstEpochDay());
+        output.writeInt(partition.getLastEpochDay());
+        output.writeInt(partition.getSize());
+        output.writeInt(partition.getStatistics().size());
+
+        for (CustomerStatistics statistics : partition.getStatistics().values()) {
+            putString(output, statistics.getGuestId());
+            putString(output, statistics.getName());
+            output.writeInt(statistics.getNumOfVisit());
+            output.writeLong(statistics.getUnscaledTotalSpend());
+            output.writeInt(statistics.getTotalSpendScale());
+            output.writeInt(statistics.getMaxPartySize());
+        }
+    }
+
+    private static PartitionedReservationStore.Partition readPartition(ByteBuffer buffer, Path partitionPath) {
+        int firstEpochDay = buffer.getInt();
+        int lastEpochDay = buffer.getInt();
+        int size = buffer.getInt();
+        int customerCount = buffer.getInt();
+        Map<String, CustomerStatistics> custStatisticsMap = new HashMap<>(customerCount * 2);
+
+        for (int c = 0; c < customerCount; c++) {
+            CustomerStatistics statistics = new CustomerStatistics(getString(buffer), getString(buffer),
+                    buffer.getInt(), buffer.getLong(), buffer.getInt(), buffer.getInt());
+            custStatisticsMap.put(statistics.getGuestId(), statistics);
+        }
+
+        return new PartitionedReservationStore.Partition(partitionPath, firstEpochDay, lastEpochDay, size,
+                custStatisticsMap);
+    }
+
+    /**
+     * Write the guest dictionary, then each column in turn.
+     *
+     * @param output
+     * @param columns
+     * @throws IOException
+     */
+    private static void writeColumns(DataOutputStream output, Columns columns) throws IOException {
+        int count = columns.size();
+
+        output.writeInt(count);
+        output.writeInt(columns.getGuestCount());
+
+        for (int guestOrdinal = 0; guestOrdinal < columns.getGuestCount(); guestOrdinal++) {
+            Guest guest = columns.getGuest(guestOrdinal);
+            putString(output, guest.getId());
+            putString(output, guest.getName());
+        }
+
+        for (int position = 0; position < count; position++) {
+            output.writeInt(columns.getEpochDay(position));
+        }
+
+        for (int position = 0; position < count; position++) {
+            output.writeInt(columns.getPartySize(position));
+        }
+
+        for (int position = 0; position < count; position++) {
+            output.writeInt(columns.getGuestOrdinal(position));
+        }
+
+        // Spend as an unscaled long and its scale, which keeps the exact BigDecimal value
+        for (int position = 0; position < count; position++) {
+            output.writeLong(columns.getUnscaledSpend(position));
+        }
+
+        for (int position = 0; position < count; position++) {
+            output.writeInt(columns.getSpendScale(position));
+        }
+
+        for (int position = 0; position < count; position++) {
+            columns.writeReservationId(output, position);
+        }
+    }
+
+    /**
+     * Read the guest dictionary and the columns back into reservations.
+     *
+     * @param buffer Positioned at the start of the dictionary
+     * @return The reservations in datasource order
+     */
+    private static List<Reservation> readReservations(ByteBuffer buffer) {
+        int count = buffer.getInt();
+
+        Guest[] guests = new Guest[buffer.getInt()];
+
+        for (int i = 0; i < guests.length; i++) {
+            guests[i] = new Guest();
+            guests[i].setId(getString(buffer));
+            guests[i].setName(getString(buffer));
+        }
+
+        int[] epochDays = getInts(buffer, count);
+        int[] partySizes = getInts(buffer, count);
+        int[] guestOrdinals = getInts(buffer, count);
+
+        long[] unscaledSpends = getLongs(buffer, count);
+        int[] spendScales = getInts(buffer, count);
+
+        List<Reservation> reservationList = new ArrayList<>(count);
+
+        // Reservations of the same guest share a single guest instance
+        for (int i = 0; i < count; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setReservation_id(getString(buffer));
+            reservation.setParty_size(partySizes[i]);
+
+            if (epochDays[i] != NULL_VALUE) {
+                reservation.setScheduled_epoch_day(epochDays[i]);
+            }
+
+            if (spendScales[i] != NULL_VALUE) {
+                reservation.setTotal_spend(BigDecimal.valueOf(unscaledSpends[i], spendScales[i]));
+            }
+
+            if (guestOrdinals[i] != NULL_VALUE) {
+                reservation.setGuest(guests[guestOrdinals[i]]);
+            }
+
+            reservationList.add(reservation);
+        }
+
+        return reservationList;
+    }
+
+    /**
+     * Read the guest dictionary and the columns straight into the columns of a columnar store.
+     *
+     * @param buffer Positioned at the start of the dictionary
+     * @return A builder holding the reservations in datasource order
+     */
+    private static ColumnarReservationStore.Builder readColumns(ByteBuffer buffer) {
+        int count = buffer.getInt();
+
+        ColumnarReservationStore.Builder builder = new ColumnarReservationStore.Builder();
+
+        // The ordinal of each guest of the snapshot in the dictionary of the builder
+        int[] builderGuestOrdinals = new int[buffer.getInt()];
+
+        for (int i = 0; i < builderGuestOrdinals.length; i++) {
+            Guest guest = new Guest();
+            guest.setId(getString(buffer));
+            guest.setName(getString(buffer));
+            builderGuestOrdinals[i] = builder.addGuest(guest);
+        }
+
+        int[] epochDays = getInts(buffer, count);
+        int[] partySizes = getInts(buffer, count);
+        int[] guestOrdinals = getInts(buffer, count);
+
+        long[] unscaledSpends = getLongs(buffer, count);
+        int[] spendScales = getInts(buffer, count);
+
+        // Each id is copied through a single reusable array
+        byte[] idBytes = new byte[64];
+
+        for (int i = 0; i < count; i++) {
+            int idLength = buffer.getInt();
+
+            if (idLength > idBytes.length) {
+                idBytes = new byte[Math.max(idLength, idBytes.length * 2)];
+            }
+
+            if (idLength >= 0) {
+                buffer.get(idBytes, 0, idLength);
+            }
+
+            builder.add(epochDays[i] == NULL_VALUE ? 0 : epochDays[i], epochDays[i] == NULL_VALUE, partySizes[i],
+                    guestOrdinals[i] == NULL_VALUE ? ColumnarReservationStore.NO_GUEST
+                            : builderGuestOrdinals[guestOrdinals[i]],
+                    unscaledSpends[i], spendScales[i] == NULL_VALUE ? CustomerStatistics.NO_SPEND_SCALE
+                            : spendScales[i], idLength >= 0 ? idBytes : null, idLength);
+        }
+
+        return builder;
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+
+        // Bulk copy of the whole column
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+
+        return values;
+    }
+
+    private static long[] getLongs(ByteBuffer buffer, int count) {
+        long[] values = new long[count];
+
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + count * Long.BYTES);
+
+        return values;
+    }
+
+    /**
+     * Write a string as its UTF-8 length and bytes, with a length of -1 for null.
+     *
+     * @param output
+     * @param value
+     * @throws IOException
+     */
+    private static void putString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the content of a file after its header.
+     */
+    private interface ContentWriter {
+
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    /**
+     * The reservations written to a snapshot, as columns in datasource order.<br/>
+     * A null scheduled date, guest or spend is given as {@link #NULL_VALUE}.
+     */
+    interface Columns {
+
+        int size();
+
+        int getGuestCount();
+
+        Guest getGuest(int guestOrdinal);
+
+        int getEpochDay(int position);
+
+        int getPartySize(int position);
+
+        int getGuestOrdinal(int position);
+
+        long getUnscaledSpend(int position);
+
+        int getSpendScale(int position);
+
+        /**
+         * Write the reservation id at a position as a string.
+         *
+         * @param output
+         * @param position
+         * @throws IOException
+         */
+        void writeReservationId(DataOutputStream output, int position) throws IOException;
+    }
+
+    /**
+     * The columns of a list of reservations, with a guest dictionary in order of first reservation.
+     */
+    private static class ListColumns implements Columns {
+
+        private final List<Reservation> reservationList;
+
+        private final Map<Guest, Integer> guestOrdinalMap = new HashMap<>();
+
+        private final List<Guest> guestList = new ArrayList<>();
+
+        ListColumns(List<Reservation> reservationList) {
+            this.reservationList = reservationList;
+
+            for (Reservation reservation : reservationList) {
+                if (reservation.getGuest() != null && !guestOrdinalMap.containsKey(reservation.getGuest())) {
+                    guestOrdinalMap.put(reservation.getGuest(), guestList.size());
+                    guestList.add(reservation.getGuest());
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return reservationList.size();
+        }
+
+        @Override
+        public int getGuestCount() {
+            return guestList.size();
+        }
+
+        @Override
+        public Guest getGuest(int guestOrdinal) {
+            return guestList.get(guestOrdinal);
+        }
+
+        @Override
+        public int getEpochDay(int position) {
+            Reservation reservation = reservationList.get(position);
+
+            return reservation.getScheduled_date() == null ? NULL_VALUE : reservation.getScheduled_epoch_day();
+        }
+
+        @Override
+        public int getPartySize(int position) {
+            return reservationList.get(position).getParty_size();
+        }
+
+        @Override
+        public int getGuestOrdinal(int position) {
+            Guest guest = reservationList.get(position).getGuest();
+
+            return guest == null ? NULL_VALUE : guestOrdinalMap.get(guest);
+        }
+
+        @Override
+        public long getUnscaledSpend(int position) {
+            BigDecimal spend = reservationList.get(position).getTotal_spend();
+
+            return spend == null ? 0 : spend.unscaledValue().longValueExact();
+        }
+
+        @Override
+        public int getSpendScale(int position) {
+            BigDecimal spend = reservationList.get(position).getTotal_spend();
+
+            return spend == null ? NULL_VALUE : spend.scale();
+        }
+
+        @Override
+        public void writeReservationId(DataOutputStream output, int position) throws IOException {
+            putString(output, reservationList.get(position).getReservation_id());
+        }
+    }
+
+    /**
+     * The path, modification time and size of a datasource file.
+     */
+    private class SourceFile {
+
+        private final String path;
+
+        private final long lastModified;
+
+        private final long size;
+
+        SourceFile(String path, long lastModified, long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        /**
+         * Get the snapshot file of the datasource, named after its absolute path so datasources never share one.
+         *
+         * @return The path of the snapshot file
+         */
+        Path getSnapshotPath() {
+            return Paths.get(snapshotDirectory).resolve("restaurant-reservations-"
+                    + UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)) + ".snapshot");
+        }
+
+        /**
+         * Get the description file of a partition, named after its absolute path.
+         *
+         * @return The path of the description file
+         */
+        Path getPartitionPath() {
+            return Paths.get(snapshotDirectory).resolve("restaurant-partition-"
+                    + UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)) + ".snapshot");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.somecompany.repository;
+
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Reservation;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An immutable, fully loaded copy of the reservation datasource, in one of the storage layouts selected by the
+ * <code>reservation.storage</code> property.
+ *
+ * @author patrick
+ */
+public interface ReservationStore {
+
+    /**
+     * Get every reservation.
+     *
+     * @return An unmodifiable list of the reservations, in datasource order
+     */
+    List<Reservation> getReservations();
+
+    /**
+     * Get the reservations scheduled within a time period.
+     *
+     * @param startDate The inclusive start of the period, or null for no lower bound
+     * @param endDate   The inclusive end of the period, or null for no upper bound
+     * @return A list of the matching reservations, in datasource order
+     */
+    List<Reservation> findByScheduledDate(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Get the statistics of each customer with a reservation within a time period, aggregating in parallel over
+     * periods holding more reservations than the threshold.
+     *
+     * @param startDate         The inclusive start of the period, or null for no lower bound
+     * @param endDate           The inclusive end of the period, or null for no upper bound
+     * @param pool              The pool to aggregate on, or null to always aggregate sequentially
+     * @param parallelThreshold The number of reservations up to which the aggregation is sequential
+     * @return A map storing unique customers by guest id, with the value holding their reservation statistics
+     */
+    Map<String, CustomerStatistics> getCustomerStatistics(LocalDate startDate, LocalDate endDate, ForkJoinPool pool,
+                                                          int parallelThreshold);
+
+    /**
+     * Get the number of reservations, those written since the store was loaded included.
+     *
+     * @return The number of reservations, without parsing or loading any that are not yet
+     */
+    int size();
+
+    /**
+     * Get the time taken to load the store.
+     *
+     * @return The load time in milliseconds
+     */
+    long getLoadTimeMillis();
+}
@@ -0,0 +1,17 @@
+package com.somecompany.repository;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by the repository after a new set of reservations has been made visible to readers.
+ *
+ * @author patrick
+ */
+public class ReservationsChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    public ReservationsChangedEvent(ReservationRepository source) {
+        super(source);
+    }
+}
@@ -0,0 +1,251 @@
+package com.somecompany.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.somecompany.model.CustomerReservationReport;
+import com.somecompany.repository.ReservationsChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Data;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of customer reservation reports, keyed by report name and date range.<br/>
+ * Uses Caffeine's W-TinyLFU eviction with a time to live, and is cleared whenever the reservations change. Each
+ * entry also keeps its JSON encoding once it has been requested, so repeated responses skip serialization. Identical
+ * concurrent requests are coalesced into a single lookup, and so into a single generation on a miss, whether or not
+ * the cache is enabled.
+ *
+ * @author patrick
+ */
+@Component
+public class CustomerReservationReportCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${report.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${report.cache.max-size:1000}")
+    private long maxSize;
+
+    @Value("${report.cache.ttl:5m}")
+    private Duration ttl;
+
+    private Cache<ReportKey, CachedReport> cache;
+
+    // Incremented on every invalidation, so a report computed from replaced reservations is never served
+    private final AtomicLong generation = new AtomicLong();
+
+    private SingleFlight<FlightKey, CachedReport> singleFlight;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "customerReservationReport");
+
+        singleFlight = new SingleFlight<>(Counter.builder("report.requests.coalesced")
+                .description("Number of report requests which shared the result of an identical request in flight")
+                .register(meterRegistry));
+    }
+
+    /**
+     * Get a report from the cache, generating and caching it if absent.<br/>
+     * Concurrent requests for the same absent report wait for a single computation.
+     *
+     * @param reportName
+     * @param startDateStr
+     * @param endDateStr
+     * @param reportLoader Generates the report on a cache miss
+     * @return An unmodifiable list of the report rows
+     * @throws IOException
+     */
+    public List<CustomerReservationReport> get(String reportName, String startDateStr, String endDateStr,
+                                               ReportLoader reportLoader) throws IOException {
+        return get(reportName, startDateStr, endDateStr, null, reportLoader);
+    }
+
+    /**
+     * Get a selection of the rows of a report from the cache, generating and caching it if absent.
+     *
+     * @param reportName
+     * @param startDateStr
+     * @param endDateStr
+     * @param selection    Describes which rows of the report are selected, or null for the whole report
+     * @param reportLoader Generates the report on a cache miss
+     * @return An unmodifiable list of the report rows
+     * @throws IOException
+     */
+    public List<CustomerReservationReport> get(String reportName, String startDateStr, String endDateStr,
+                                               String selection, ReportLoader reportLoader) throws IOException {
+        return getCachedReport(reportName, startDateStr, endDateStr, selection, reportLoader).getReportList();
+    }
+
+    /**
+     * Get a report from the cache as a JSON body, generating and caching it if absent.<br/>
+     * The report is serialized once per cache entry.
+     *
+     * @param reportName
+     * @param startDateStr
+     * @param endDateStr
+     * @param reportLoader Generates the report on a cache miss
+     * @return The report encoded as JSON, with its entity tag
+     * @throws IOException
+     */
+    public SerializedReport getSerialized(String reportName, String startDateStr, String endDateStr,
+                                          ReportLoader reportLoader) throws IOException {
+        return getSerialized(reportName, startDateStr, endDateStr, null, reportLoader);
+    }
+
+    /**
+     * Get a selection of the rows of a report from the cache as a JSON body, generating and caching it if absent.
+     *
+     * @param reportName
+     * @param startDateStr
+     * @param endDateStr
+     * @param selection    Describes which rows of the report are selected, or null for the whole report
+     * @param reportLoader Generates the report on a cache miss
+     * @return The report encoded as JSON, with its entity tag
+     * @throws IOException
+     */
+    public SerializedReport getSerialized(String reportName, String startDateStr, String endDateStr,
+                                          String selection, ReportLoader reportLoader) throws IOException {
+        CachedReport cachedReport = getCachedReport(reportName, startDateStr, endDateStr, selection, reportLoader);
+
+        // Concurrent first requests may both serialize, which yields the same bytes
+        SerializedReport serializedReport = cachedReport.getSerializedReport();
+
+        if (serializedReport == null) {
+            serializedReport = serialize(cachedReport.getReportList());
+            cachedReport.setSerializedReport(serializedReport);
+        }
+
+        return serializedReport;
+    }
+
+    /**
+     * Clear the cache once the reservations have changed.
+     */
+    @EventListener(ReservationsChangedEvent.class)
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    private CachedReport getCachedReport(String reportName, String startDateStr, String endDateStr, String selection,
+                                         ReportLoader reportLoader) throws IOException {
+        // Report names are matched case-insensitively
+        ReportKey key = new ReportKey(reportName.toLowerCase(), startDateStr, endDateStr, selection);
+
+        // Requests arriving after an invalidation never join a lookup of replaced reservations
+        return singleFlight.execute(new FlightKey(key, generation.get()), () -> lookup(key, reportLoader));
+    }
+
+    private CachedReport lookup(ReportKey key, ReportLoader reportLoader) throws IOException {
+        if (!cacheEnabled) {
+            return new CachedReport(generation.get(), reportLoader.load());
+        }
+
+        try {
+            while (true) {
+                long currentGeneration = generation.get();
+                CachedReport cachedReport = cache.get(key, k -> load(currentGeneration, reportLoader));
+
+                if (cachedReport.getGeneration() >= currentGeneration) {
+                    return cachedReport;
+                }
+
+                // Generated from reservations which have since been replaced
+                cache.asMap().remove(key, cachedReport);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static CachedReport load(long generation, ReportLoader reportLoader) {
+        try {
+            return new CachedReport(generation, reportLoader.load());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encode a report as JSON, exactly as the HTTP message converter would.
+     *
+     * @param reportList
+     * @return The encoded report with a strong entity tag derived from its content
+     * @throws IOException
+     */
+    private SerializedReport serialize(List<CustomerReservationReport> reportList) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(reportList);
+
+        return new SerializedReport(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+    }
+
+    /**
+     * Generates a report on a cache miss.
+     */
+    @FunctionalInterface
+    public interface ReportLoader {
+
+        List<CustomerReservationReport> load() throws IOException;
+    }
+
+    @Data
+    private static class ReportKey {
+
+        private final String reportName;
+        private final String startDateStr;
+        private final String endDateStr;
+        private final String selection;
+    }
+
+    @Data
+    private static class FlightKey {
+
+        private final ReportKey reportKey;
+        private final long generation;
+    }
+
+    @Getter
+    private static class CachedReport {
+
+        private final long generation;
+
+        private final List<CustomerReservationReport> reportList;
+
+        // Set on the first serialized request
+        private volatile SerializedReport serializedReport;
+
+        CachedReport(long generation, List<CustomerReservationReport> reportList) {
+            this.generation = generation;
+            this.reportList = Collections.unmodifiableList(reportList);
+        }
+
+        void setSerializedReport(SerializedReport serializedReport) {
+            this.serializedReport = serializedReport;
+        }
+    }
+}
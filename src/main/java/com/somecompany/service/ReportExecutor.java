@@ -0,0 +1,69 @@
+package com.somecompany.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Dedicated, bounded thread pool for generating reports off the servlet request threads.<br/>
+ * Once every thread is busy and the queue is full, new reports are rejected at once instead of waiting, so a burst of
+ * expensive reports can neither exhaust the servlet threads nor pile up without bound. The pool is kept apart from the
+ * application task executor, which serves the streaming responses.
+ *
+ * @author patrick
+ */
+@Component
+public class ReportExecutor {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${report.async.core-pool-size:4}")
+    private int corePoolSize;
+
+    @Value("${report.async.max-pool-size:8}")
+    private int maxPoolSize;
+
+    @Value("${report.async.queue-capacity:50}")
+    private int queueCapacity;
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    @PostConstruct
+    public void init() {
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("report-");
+        executor.initialize();
+
+        ExecutorServiceMetrics.monitor(meterRegistry, executor.getThreadPoolExecutor(), "reportExecutor",
+                Collections.emptyList());
+    }
+
+    /**
+     * Generate a report on the pool.
+     *
+     * @param supplier Generates the report
+     * @return A future completed with the report once generated
+     * @throws TaskRejectedException If the pool and its queue are full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,268 @@
+package com.somecompany.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.somecompany.model.Reservation;
+import com.somecompany.model.ReservationImportProgress;
+import com.somecompany.model.ReservationImportProgress.LineError;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Imports newline-delimited reservation JSON in bulk.<br/>
+ * The request body is read as a stream of chunks of lines, which are parsed and validated on a dedicated pool while
+ * the parsed reservations of earlier chunks are added in large batches, in line order. Only a bounded number of chunks
+ * is in flight at a time, so an import of any size holds a few chunks and one batch in memory. A line which cannot be
+ * parsed or added is reported by line number and skipped, without aborting the import.
+ *
+ * @author patrick
+ */
+@Slf4j
+@Component
+public class ReservationImporter {
+
+    @Autowired
+    private RestaurantService restaurantService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${reservation.import.parse-threads:4}")
+    private int parseThreads;
+
+    @Value("${reservation.import.chunk-lines:10000}")
+    private int chunkLines;
+
+    @Value("${reservation.import.batch-size:2000}")
+    private int batchSize;
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    private ObjectReader reservationReader;
+
+    @PostConstruct
+    public void init() {
+        executor.setCorePoolSize(parseThreads);
+        executor.setMaxPoolSize(parseThreads);
+        executor.setThreadNamePrefix("reservation-import-");
+        executor.initialize();
+
+        ExecutorServiceMetrics.monitor(meterRegistry, executor.getThreadPoolExecutor(), "reservationImportExecutor",
+                Collections.emptyList());
+
+        reservationReader = objectMapper.readerFor(Reservation.class);
+    }
+
+    /**
+     * Import newline-delimited reservation JSON, one reservation per line. Blank lines are skipped.
+     *
+     * @param inputStream      The newline-delimited JSON, read to its end
+     * @param progressListener Notified after each batch is added, and once more when the import is complete
+     * @return The final progress
+     * @throws IOException If the input cannot be read or a batch cannot be persisted, leaving the batches added before
+     */
+    public ReservationImportProgress importReservations(InputStream inputStream,
+                                                        Consumer<ReservationImportProgress> progressListener)
+            throws IOException {
+        Import anImport = new Import(progressListener);
+
+        // Keep enough chunks in flight to occupy every parse thread while the oldest one is added
+        int maxChunksInFlight = parseThreads * 2;
+        Deque<Future<ParsedChunk>> chunksInFlight = new ArrayDeque<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            List<String> lines = new ArrayList<>(chunkLines);
+            long firstLineNumber = 1;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+
+                if (lines.size() == chunkLines) {
+                    if (chunksInFlight.size() == maxChunksInFlight) {
+                        anImport.add(await(chunksInFlight.poll()));
+                    }
+
+                    chunksInFlight.add(submit(lines, firstLineNumber));
+                    firstLineNumber += lines.size();
+                    lines = new ArrayList<>(chunkLines);
+                }
+            }
+
+            if (!lines.isEmpty()) {
+                chunksInFlight.add(submit(lines, firstLineNumber));
+            }
+
+            while (!chunksInFlight.isEmpty()) {
+                anImport.add(await(chunksInFlight.poll()));
+            }
+
+            return anImport.complete();
+        } finally {
+            // Stop parsing the chunks left by a failed import
+            chunksInFlight.forEach(chunk -> chunk.cancel(true));
+        }
+    }
+
+    /**
+     * Parse and validate a chunk of lines on the pool.
+     *
+     * @param lines
+     * @param firstLineNumber Line number of the first line of the chunk
+     * @return A future completed with the parsed chunk
+     */
+    private Future<ParsedChunk> submit(List<String> lines, long firstLineNumber) {
+        return executor.submit(() -> {
+            ParsedChunk chunk = new ParsedChunk(lines.size());
+
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    Reservation reservation = reservationReader.readValue(line);
+                    restaurantService.validateReservation(reservation);
+                    chunk.reservations.add(reservation);
+                } catch (JsonProcessingException e) {
+                    chunk.errors.add(new LineError(firstLineNumber + i, e.getOriginalMessage()));
+                } catch (Exception e) {
+                    chunk.errors.add(new LineError(firstLineNumber + i, e.getLocalizedMessage()));
+                }
+            }
+
+            return chunk;
+        });
+    }
+
+    private ParsedChunk await(Future<ParsedChunk> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing reservations");
+        } catch (ExecutionException | CancellationException e) {
+            throw new IOException("Failed to parse reservations", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * The reservations and errors of a chunk of lines.
+     */
+    private static class ParsedChunk {
+
+        private final int lineCount;
+
+        private final List<Reservation> reservations;
+
+        private final List<LineError> errors = new ArrayList<>();
+
+        ParsedChunk(int lineCount) {
+            this.lineCount = lineCount;
+            this.reservations = new ArrayList<>(lineCount);
+        }
+    }
+
+    /**
+     * Collects parsed chunks in line order into batches, and keeps the progress of an import.
+     */
+    private class Import {
+
+        private final Consumer<ReservationImportProgress> progressListener;
+
+        private List<Reservation> batch = new ArrayList<>();
+
+        private ReservationImportProgress progress = new ReservationImportProgress();
+
+        Import(Consumer<ReservationImportProgress> progressListener) {
+            this.progressListener = progressListener;
+        }
+
+        void add(ParsedChunk chunk) throws IOException {
+            progress.setLines(progress.getLines() + chunk.lineCount);
+            progress.setRejected(progress.getRejected() + chunk.errors.size());
+            progress.getErrors().addAll(chunk.errors);
+            batch.addAll(chunk.reservations);
+
+            if (batch.size() >= batchSize) {
+                addBatch();
+                report();
+            } else if (!chunk.errors.isEmpty()) {
+                // Reported straight away, so the errors of a mostly malformed input are never held until a batch fills
+                report();
+            }
+        }
+
+        ReservationImportProgress complete() throws IOException {
+            addBatch();
+            progress.setComplete(true);
+
+            ReservationImportProgress finalProgress = progress;
+            report();
+
+            log.info("Imported " + finalProgress.getAccepted() + " reservations from " + finalProgress.getLines()
+                    + " lines, rejecting " + finalProgress.getRejected());
+
+            return finalProgress;
+        }
+
+        private void addBatch() throws IOException {
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            restaurantService.addReservations(batch);
+            progress.setAccepted(progress.getAccepted() + batch.size());
+            // A new list rather than clearing, as the added one may still be referenced by a write
+            batch = new ArrayList<>();
+        }
+
+        /**
+         * Notify the listener, and start collecting the errors of the following lines afresh.
+         */
+        private void report() {
+            progressListener.accept(progress);
+
+            ReservationImportProgress nextProgress = new ReservationImportProgress();
+            nextProgress.setLines(progress.getLines());
+            nextProgress.setAccepted(progress.getAccepted());
+            nextProgress.setRejected(progress.getRejected());
+            progress = nextProgress;
+        }
+    }
+}
@@ -1,25 +1,29 @@
 package com.somecompany.service;
 
 import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.somecompany.constant.RestaurantConstant;
-import com.somecompany.constant.RestaurantConstant.CustomerReservationBasicReportField;
 import com.somecompany.model.*;
+import com.somecompany.repository.ReservationReader;
+import com.somecompany.repository.ReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
- * The logic unit which carries out the request operation.
+ * The logic unit which carries out the request operation.<br/>
+ * The date filter, the customer aggregation and the report assembly are timed, with the reports tagged by report
+ * name.
  *
  * @author patrick
  */
@@ -27,10 +31,16 @@ import java.util.Map.Entry;
 public class RestaurantService {
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private ReservationRepository reservationRepository;
 
-    @Value("${dataSource}")
-    private String dataSource;
+    @Autowired
+    private CustomerReservationReportCache reportCache;
+
+    @Autowired
+    private ReservationReader reservationReader;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     /**
      * Get all reservation records from the datasource.
@@ -41,15 +51,8 @@ public class RestaurantService {
      * @throws IOException
      */
     public List<Reservation> getAllReservations() throws JsonParseException, JsonMappingException, IOException {
-
-        List<Reservation> reservationList = new ArrayList<>();
-
-        InputStream inputStream = TypeReference.class.getResourceAsStream(dataSource);
-
-        reservationList = objectMapper.readValue(inputStream, new TypeReference<List<Reservation>>() {
-        });
-
-        return reservationList;
+        // The datasource is parsed once at startup and held by the repository
+        return reservationRepository.findAll();
     }
 
     /**
@@ -64,65 +67,143 @@ public class RestaurantService {
      */
     public List<Reservation> getReservationsByScheduledDate(String startDateStr, String endDateStr)
             throws JsonParseException, JsonMappingException, IOException {
-        // The full list of reservations
-        List<Reservation> rawList = getAllReservations();
+        Timer.Sample sample = Timer.start(meterRegistry);
 
-        // The list of reservations with matching scheduledDate
-        List<Reservation> filteredList = new ArrayList<>();
+        // The list of reservations with matching scheduledDate, looked up in the date index
+        List<Reservation> reservationList = reservationRepository
+                .findByScheduledDate(parseDate(startDateStr), parseDate(endDateStr));
 
-        for (Reservation reservation : rawList) {
-            // Get date from the DB
-            String scheduledDateStr = reservation.getScheduled_date();
-            LocalDate scheduledDate = LocalDate.parse(scheduledDateStr);
+        sample.stop(Timer.builder("reservation.filter").description("Time taken to filter reservations by date")
+                .register(meterRegistry));
+        // The date index narrows the search down to the matches without visiting the other reservations, so only the
+        // matches are counted
+        Counter.builder("reservation.filter.records.matched")
+                .description("Number of reservations matched by the date filter").register(meterRegistry)
+                .increment(reservationList.size());
 
-            LocalDate startDate;
-            LocalDate endDate;
+        return reservationList;
+    }
 
-            if (startDateStr != null && endDateStr != null) {
-                // Both startDate and endDate search criteria exist
+    /**
+     * Add reservations to those from the datasource.<br/>
+     * Returns once the reservations are persisted, from which point they are included in every query and report.
+     *
+     * @param reservationList
+     * @return The added reservations
+     * @throws IOException If the reservations cannot be persisted
+     */
+    public List<Reservation> addReservations(List<Reservation> reservationList) throws IOException {
+        for (Reservation reservation : reservationList) {
+            validateReservation(reservation);
+        }
 
-                startDate = LocalDate.parse(startDateStr);
-                endDate = LocalDate.parse(endDateStr);
+        if (!reservationList.isEmpty()) {
+            reservationRepository.saveAll(reservationList);
+        }
 
-                if (scheduledDate.compareTo(startDate) >= 0 && scheduledDate.compareTo(endDate) <= 0) {
-                    // scheduledDate is in between startDate(inclusive) and endDate(inclusive))
-                    filteredList.add(reservation);
-                }
-            } else if (startDateStr != null && endDateStr == null) {
-                // Only startDate exists
+        return reservationList;
+    }
 
-                startDate = LocalDate.parse(startDateStr);
+    /**
+     * Check that a reservation can be added.
+     *
+     * @param reservation
+     * @throws IllegalArgumentException If the reservation lacks a field it is looked up or aggregated by
+     */
+    void validateReservation(Reservation reservation) {
+        // Reservations are looked up by date and aggregated by guest id
+        if (reservation.getScheduled_date() == null) {
+            throw new IllegalArgumentException("Scheduled date is required");
+        }
 
-                if (scheduledDate.compareTo(startDate) >= 0) {
-                    // scheduledDate is after startDate(inlcusive)
-                    filteredList.add(reservation);
-                }
-            } else if (startDateStr == null && endDateStr != null) {
-                // Only endDate exists
+        if (reservation.getGuest() == null || reservation.getGuest().getId() == null) {
+            throw new IllegalArgumentException("Guest id is required");
+        }
+    }
 
-                endDate = LocalDate.parse(endDateStr);
+    /**
+     * Get a report showing each customer's total restaurant visits and the respective total spending within a time
+     * period.
+     *
+     * @param startDateStr
+     * @param endDateStr
+     * @return A list of report of each customer's total restaurant visits and the respective total spending within a
+     * time period
+     * @throws JsonParseException
+     * @throws JsonMappingException
+     * @throws IOException
+     */
+    public List<CustomerReservationReport> getCustomerReservationReport(String reportName, String startDateStr,
+                                                                        String endDateStr) throws JsonParseException, JsonMappingException, IOException {
+        // Repeated reports are served from the cache until it expires or the reservations change
+        return reportCache.get(reportName, startDateStr, endDateStr,
+                () -> generateCustomerReservationReport(reportName, startDateStr, endDateStr));
+    }
 
-                if (scheduledDate.compareTo(endDate) <= 0) {
-                    // scheduledDate is before endDate(inlcusive)
-                    filteredList.add(reservation);
-                }
-            } else {
-                // No startDate and endDate
-                // No need to check scheduledDate
+    /**
+     * Get a report showing each customer's total restaurant visits and the respective total spending within a time
+     * period, already encoded as a JSON response body.
+     *
+     * @param reportName
+     * @param startDateStr
+     * @param endDateStr
+     * @return The report encoded as JSON, with its entity tag
+     * @throws IOException
+     */
+    public SerializedReport getSerializedCustomerReservationReport(String reportName, String startDateStr,
+                                                                   String endDateStr) throws IOException {
+        // The encoding is cached along with the report
+        return reportCache.getSerialized(reportName, startDateStr, endDateStr,
+                () -> generateCustomerReservationReport(reportName, startDateStr, endDateStr));
+    }
 
-                filteredList.add(reservation);
-            }
-        }
+    /**
+     * Get a report showing the top customers by total restaurant visits or by total spending within a time period.
+     *
+     * @param reportName
+     * @param startDateStr
+     * @param endDateStr
+     * @param top          The number of customers to report
+     * @param orderBy      num_of_visit or total_spend
+     * @return A list of report of the top customers, in descending order of the ordering field and then by name
+     * @throws IOException
+     */
+    public List<CustomerReservationReport> getTopCustomerReservationReport(String reportName, String startDateStr,
+                                                                           String endDateStr, int top, String orderBy)
+            throws IOException {
+        return reportCache.get(reportName, startDateStr, endDateStr, getTopSelection(top, orderBy),
+                () -> generateTopCustomerReservationReport(reportName, startDateStr, endDateStr, top, orderBy));
+    }
 
-        return filteredList;
+    /**
+     * Get a report showing the top customers by total restaurant visits or by total spending within a time period,
+     * already encoded as a JSON response body.
+     *
+     * @param reportName
+     * @param startDateStr
+     * @param endDateStr
+     * @param top          The number of customers to report
+     * @param orderBy      num_of_visit or total_spend
+     * @return The report encoded as JSON, with its entity tag
+     * @throws IOException
+     */
+    public SerializedReport getSerializedTopCustomerReservationReport(String reportName, String startDateStr,
+                                                                      String endDateStr, int top, String orderBy)
+            throws IOException {
+        return reportCache.getSerialized(reportName, startDateStr, endDateStr, getTopSelection(top, orderBy),
+                () -> generateTopCustomerReservationReport(reportName, startDateStr, endDateStr, top, orderBy));
     }
 
     /**
      * Get a report showing each customer's total restaurant visits and the respective total spending within a time
-     * period.
+     * period, over reservations read from a stream rather than from the datasource.<br/>
+     * Reservations are parsed, filtered and aggregated one at a time and never retained, so memory use depends on the
+     * number of customers only, not on the size of the input.
      *
+     * @param reportName
      * @param startDateStr
      * @param endDateStr
+     * @param inputStream A JSON array of reservations
      * @return A list of report of each customer's total restaurant visits and the respective total spending within a
      * time period
      * @throws JsonParseException
@@ -130,184 +211,374 @@ public class RestaurantService {
      * @throws IOException
      */
     public List<CustomerReservationReport> getCustomerReservationReport(String reportName, String startDateStr,
-                                                                        String endDateStr) throws JsonParseException, JsonMappingException, IOException {
-        // The list of reservations with matching scheduledDate
-        List<Reservation> rawList = getReservationsByScheduledDate(startDateStr, endDateStr);
+                                                                        String endDateStr, InputStream inputStream)
+            throws JsonParseException, JsonMappingException, IOException {
+        // Inclusive epoch day bounds, open ends cover every day
+        long startDay = startDateStr == null ? Long.MIN_VALUE : parseDate(startDateStr).toEpochDay();
+        long endDay = endDateStr == null ? Long.MAX_VALUE : parseDate(endDateStr).toEpochDay();
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        // A map storing unique customers by guest id, with the value holding their reservation statistics
+        Map<String, CustomerStatistics> custStatisticsMap = new HashMap<>();
+
+        reservationReader.read(inputStream, reservation -> {
+            int scheduledDay = reservation.getScheduled_epoch_day();
 
-        // A map storing unique customers as the key, with the value as another map (detailsMap) holding their
-        // reservation statistics
-        Map<String, Map<String, Object>> custStatisticsMap = getCustomerStatistics(rawList);
+            if (scheduledDay >= startDay && scheduledDay <= endDay) {
+                CustomerStatistics.addReservation(custStatisticsMap, reservation);
+            }
+        });
+
+        // Includes parsing the uploaded reservations
+        recordAggregation(reportName, sample, custStatisticsMap);
+
+        return assembleCustomerReservationReport(reportName, custStatisticsMap);
+    }
+
+    /**
+     * Stream a report showing each customer's total restaurant visits and the respective total spending within a time
+     * period.<br/>
+     * The rows are only created as the stream is consumed, in name order, so the complete report list is never held
+     * in memory.
+     *
+     * @param reportName
+     * @param startDateStr
+     * @param endDateStr
+     * @return A stream of report of each customer's total restaurant visits and the respective total spending within a
+     * time period, sorted by name
+     */
+    public Stream<CustomerReservationReport> streamCustomerReservationReport(String reportName, String startDateStr,
+                                                                             String endDateStr) {
+        Function<CustomerStatistics, CustomerReservationReport> reportConfigurer = getReportConfigurer(reportName);
+
+        if (reportConfigurer == null) {
+            return Stream.empty();
+        }
+
+        // A map storing unique customers by guest id, with the value holding their reservation statistics
+        Map<String, CustomerStatistics> custStatisticsMap = getCustomerStatistics(reportName, startDateStr, endDateStr);
+
+        return custStatisticsMap.values().stream().sorted(Comparator.comparing(CustomerStatistics::getName))
+                .map(reportConfigurer);
+    }
+
+    /**
+     * Generate a report showing each customer's total restaurant visits and the respective total spending within a
+     * time period.
+     *
+     * @param reportName
+     * @param startDateStr
+     * @param endDateStr
+     * @return A list of report of each customer's total restaurant visits and the respective total spending within a
+     * time period
+     */
+    private List<CustomerReservationReport> generateCustomerReservationReport(String reportName, String startDateStr,
+                                                                              String endDateStr) {
+        // A map storing unique customers by guest id, with the value holding their reservation statistics
+        Map<String, CustomerStatistics> custStatisticsMap = getCustomerStatistics(reportName, startDateStr, endDateStr);
+
+        return assembleCustomerReservationReport(reportName, custStatisticsMap);
+    }
+
+    /**
+     * Generate a report showing the top customers by total restaurant visits or by total spending within a time
+     * period.<br/>
+     * The top customers are selected with a heap bounded to the requested size, so only they are ever sorted and
+     * only their rows are created.
+     *
+     * @param reportName
+     * @param startDateStr
+     * @param endDateStr
+     * @param top
+     * @param orderBy
+     * @return A list of report of the top customers, in descending order of the ordering field and then by name
+     */
+    private List<CustomerReservationReport> generateTopCustomerReservationReport(String reportName,
+                                                                                 String startDateStr,
+                                                                                 String endDateStr, int top,
+                                                                                 String orderBy) {
+        // The final list
+        List<CustomerReservationReport> reportList = new ArrayList<>();
+
+        Function<CustomerStatistics, CustomerReservationReport> reportConfigurer = getReportConfigurer(reportName);
+
+        if (reportConfigurer == null || top <= 0) {
+            return reportList;
+        }
+
+        // A map storing unique customers by guest id, with the value holding their reservation statistics
+        Map<String, CustomerStatistics> custStatisticsMap = getCustomerStatistics(reportName, startDateStr, endDateStr);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        // Best customers first, ties broken by name
+        Comparator<CustomerStatistics> ranking = getRanking(orderBy);
+
+        // Min-heap of the best customers seen so far, with the worst of them at its head
+        PriorityQueue<CustomerStatistics> topQueue = new PriorityQueue<>(Math.min(top, 1024), ranking.reversed());
+
+        for (CustomerStatistics statistics : custStatisticsMap.values()) {
+            if (topQueue.size() < top) {
+                topQueue.add(statistics);
+            } else if (ranking.compare(statistics, topQueue.peek()) < 0) {
+                topQueue.poll();
+                topQueue.add(statistics);
+            }
+        }
+
+        List<CustomerStatistics> topList = new ArrayList<>(topQueue);
+        topList.sort(ranking);
+
+        for (CustomerStatistics statistics : topList) {
+            reportList.add(reportConfigurer.apply(statistics));
+        }
+
+        sample.stop(getAssemblyTimer(reportName));
+
+        return reportList;
+    }
+
+    /**
+     * Get the ordering of customers for a top customers report.
+     *
+     * @param orderBy num_of_visit or total_spend
+     * @return A comparator ordering customers from the highest value of the field down, and then by name
+     */
+    private Comparator<CustomerStatistics> getRanking(String orderBy) {
+        Comparator<CustomerStatistics> ranking;
+
+        if (orderBy.equals(RestaurantConstant.CustomerReservationBasicReportField.NUM_OF_VISIT.getField())) {
+            ranking = Comparator.comparingInt(CustomerStatistics::getNumOfVisit).reversed();
+        } else {
+            ranking = Comparator.comparing(CustomerStatistics::getTotalSpend).reversed();
+        }
+
+        return ranking.thenComparing(CustomerStatistics::getName);
+    }
+
+    /**
+     * Describe the selection of a top customers report, to tell its cache entry apart from the full report's.
+     *
+     * @param top
+     * @param orderBy
+     * @return The selection description
+     */
+    private String getTopSelection(int top, String orderBy) {
+        return "top=" + top + "&orderBy=" + orderBy;
+    }
+
+    /**
+     * Assemble the report rows of a report type from customer statistics.
+     *
+     * @param reportName
+     * @param custStatisticsMap
+     * @return A list of report of each customer, sorted by name
+     */
+    private List<CustomerReservationReport> assembleCustomerReservationReport(
+            String reportName, Map<String, CustomerStatistics> custStatisticsMap) {
+        Timer.Sample sample = Timer.start(meterRegistry);
 
         // The final list
         List<CustomerReservationReport> reportList = new ArrayList<>();
 
+        Function<CustomerStatistics, CustomerReservationReport> reportConfigurer = getReportConfigurer(reportName);
+
+        if (reportConfigurer != null) {
+            for (CustomerStatistics statistics : custStatisticsMap.values()) {
+                reportList.add(reportConfigurer.apply(statistics));
+            }
+        }
+
+        // Sort the list in ascending order
+        Collections.sort(reportList);
+
+        sample.stop(getAssemblyTimer(reportName));
+
+        return reportList;
+    }
+
+    /**
+     * Get the function which configures a report row of a report type.
+     *
+     * @param reportName
+     * @return The function creating a report row from the statistics of a customer, or null if the report type is
+     * unknown
+     */
+    private Function<CustomerStatistics, CustomerReservationReport> getReportConfigurer(String reportName) {
         // CustomerReservationBasicReport
         if (reportName.toLowerCase().equals(RestaurantConstant.CUSTOMER_RESERVATION_BASIC_REPORT.toLowerCase())) {
-            configureCustomerReservationBasicReport(reportList, custStatisticsMap);
+            return this::configureCustomerReservationBasicReport;
         }
 
         // CustomerReservationAdvancedReport
         if (reportName.toLowerCase().equals(RestaurantConstant.CUSTOMER_RESERVATION_ADVANCED_REPORT.toLowerCase())) {
-            configureCustomerReservationAdvancedReport(reportList, custStatisticsMap);
+            return this::configureCustomerReservationAdvancedReport;
         }
 
         // CustomerReservationVIPAdvancedReport
         if (reportName.toLowerCase()
                 .equals(RestaurantConstant.CUSTOMER_RESERVATION_VIP_ADVANCED_REPORT.toLowerCase())) {
-            configureCustomerReservationVipAdvancedReport(reportList, custStatisticsMap);
+            return this::configureCustomerReservationVipAdvancedReport;
         }
 
-        // Sort the list in ascending order
-        Collections.sort(reportList);
-
-        return reportList;
+        return null;
     }
 
     /**
-     * Generate a map storing customer reservation statistics.
+     * Generate a map storing customer reservation statistics within a time period.
      *
-     * @param rawList
-     * @return A map storing unique customers as the key, with the value as another map (detailsMap) holding their
-     * reservation statistics
+     * @param reportName
+     * @param startDateStr
+     * @param endDateStr
+     * @return A map storing unique customers by guest id, with the value holding their reservation statistics
      */
-    private Map<String, Map<String, Object>> getCustomerStatistics(List<Reservation> rawList) {
+    private Map<String, CustomerStatistics> getCustomerStatistics(String reportName, String startDateStr,
+                                                                  String endDateStr) {
+        Timer.Sample sample = Timer.start(meterRegistry);
 
-        // A map storing unique customers as the key, with the value as another map (detailsMap) holding their
-        // reservation statistics
+        // Merged from the per-day and per-month rollups of the repository, without touching the raw reservations
         // e.g.
-        // {Felix Fish" | {[num_of_visit|10],[total_spend|999.99]}}
-        Map<String, Map<String, Object>> custStatisticsMap = new HashMap<>();
-
-        for (Reservation reservation : rawList) {
-            if (custStatisticsMap.containsKey(reservation.getGuest().getName())) {
-                // Already have this customer entry
-
-                Map<String, Object> detailsMap = custStatisticsMap.get(reservation.getGuest().getName());
-                // Update number of visit
-                detailsMap.put(CustomerReservationBasicReportField.NUM_OF_VISIT.getField(),
-                        (Integer) detailsMap.get(CustomerReservationBasicReportField.NUM_OF_VISIT.getField()) + 1);
-                // Update total spend
-                detailsMap.put("total_spend",
-                        ((BigDecimal) detailsMap.get(CustomerReservationBasicReportField.TOTAL_SPEND.getField()))
-                                .add(reservation.getTotal_spend()));
-            } else {
-                // Not yet have this customer entry
-
-                Map<String, Object> detailsMap = new HashMap<>();
-                // Update number of visit for the first time
-                detailsMap.put(CustomerReservationBasicReportField.NUM_OF_VISIT.getField(), 1);
-                // Update total spend for the first time
-                detailsMap.put(CustomerReservationBasicReportField.TOTAL_SPEND.getField(),
-                        reservation.getTotal_spend());
-
-                custStatisticsMap.put(reservation.getGuest().getName(), detailsMap);
-            }
-        }
+        // {1004 | {name: Felix Fish, numOfVisit: 10, totalSpend: 999.99, maxPartySize: 6}}
+        Map<String, CustomerStatistics> custStatisticsMap = reservationRepository
+                .findCustomerStatistics(parseDate(startDateStr), parseDate(endDateStr));
+
+        recordAggregation(reportName, sample, custStatisticsMap);
 
         return custStatisticsMap;
     }
 
     /**
-     * Configure the report for CustomerReservationBasicReport type.
+     * Record the time taken by a customer aggregation and the number of customers it found.
      *
-     * @param reportList
-     * @param custStatisticsMap
+     * @param reportName
+     * @param sample            Started when the aggregation started
+     * @param custStatisticsMap The aggregated customers
      */
-    private void configureCustomerReservationBasicReport(List<CustomerReservationReport> reportList,
-                                                         Map<String, Map<String, Object>> custStatisticsMap) {
+    private void recordAggregation(String reportName, Timer.Sample sample,
+                                   Map<String, CustomerStatistics> custStatisticsMap) {
+        String reportNameTag = getReportNameTag(reportName);
+
+        sample.stop(Timer.builder("report.aggregation").description("Time taken to aggregate customer statistics")
+                .tag("reportName", reportNameTag).register(meterRegistry));
+        DistributionSummary.builder("report.aggregation.customers")
+                .description("Number of distinct customers aggregated for a report").tag("reportName", reportNameTag)
+                .register(meterRegistry).record(custStatisticsMap.size());
+    }
+
+    private Timer getAssemblyTimer(String reportName) {
+        return Timer.builder("report.assembly").description("Time taken to create and sort the report rows")
+                .tag("reportName", getReportNameTag(reportName)).register(meterRegistry);
+    }
 
-        for (Entry<String, Map<String, Object>> entry : custStatisticsMap.entrySet()) {
+    /**
+     * Get the value of the report name tag of the report metrics.
+     *
+     * @param reportName
+     * @return The lowercase report name, or "unknown" for an unknown report type, so arbitrary names requested do
+     * not each create their own metrics
+     */
+    private String getReportNameTag(String reportName) {
+        return getReportConfigurer(reportName) == null ? "unknown" : reportName.toLowerCase();
+    }
 
-            CustomerReservationBasicReport report = new CustomerReservationBasicReport();
+    /**
+     * Configure the report row for CustomerReservationBasicReport type.
+     *
+     * @param statistics
+     * @return The report row of the customer
+     */
+    private CustomerReservationReport configureCustomerReservationBasicReport(CustomerStatistics statistics) {
+        CustomerReservationBasicReport report = new CustomerReservationBasicReport();
 
-            // Basic fields
-            addCustomerReservationBasicReportFields(report, entry);
+        // Basic fields
+        addCustomerReservationBasicReportFields(report, statistics);
 
-            reportList.add(report);
-        }
+        return report;
     }
 
     /**
-     * Configure the report for configureCustomerReservationAdvancedReport type.
+     * Configure the report row for configureCustomerReservationAdvancedReport type.
      *
-     * @param reportList
-     * @param custStatisticsMap
+     * @param statistics
+     * @return The report row of the customer
      */
-    private void configureCustomerReservationAdvancedReport(List<CustomerReservationReport> reportList,
-                                                            Map<String, Map<String, Object>> custStatisticsMap) {
-
-        for (Entry<String, Map<String, Object>> entry : custStatisticsMap.entrySet()) {
-            CustomerReservationAdvancedReport report = new CustomerReservationAdvancedReport();
+    private CustomerReservationReport configureCustomerReservationAdvancedReport(CustomerStatistics statistics) {
+        CustomerReservationAdvancedReport report = new CustomerReservationAdvancedReport();
 
-            // Basic fields
-            addCustomerReservationBasicReportFields(report, entry);
+        // Basic fields
+        addCustomerReservationBasicReportFields(report, statistics);
 
-            // CustomerReservationAdvancedReport fields
-            addCustomerReservationAdvancedReportFields(report, entry);
+        // CustomerReservationAdvancedReport fields
+        addCustomerReservationAdvancedReportFields(report, statistics);
 
-            reportList.add(report);
-        }
+        return report;
     }
 
     /**
-     * Configure the report for configureCustomerReservationVipAdvancedReport type.
+     * Configure the report row for configureCustomerReservationVipAdvancedReport type.
      *
-     * @param reportList
-     * @param custStatisticsMap
+     * @param statistics
+     * @return The report row of the customer
      */
-    private void configureCustomerReservationVipAdvancedReport(List<CustomerReservationReport> reportList,
-                                                               Map<String, Map<String, Object>> custStatisticsMap) {
-
-        for (Entry<String, Map<String, Object>> entry : custStatisticsMap.entrySet()) {
-            CustomerReservationVipAdvancedReport report = new CustomerReservationVipAdvancedReport();
+    private CustomerReservationReport configureCustomerReservationVipAdvancedReport(CustomerStatistics statistics) {
+        CustomerReservationVipAdvancedReport report = new CustomerReservationVipAdvancedReport();
 
-            // Basic fields
-            addCustomerReservationBasicReportFields(report, entry);
+        // Basic fields
+        addCustomerReservationBasicReportFields(report, statistics);
 
-            // CustomerReservationAdvancedReport fields
-            addCustomerReservationAdvancedReportFields(report, entry);
+        // CustomerReservationAdvancedReport fields
+        addCustomerReservationAdvancedReportFields(report, statistics);
 
-            // CustomerReservationVipAdvancedReport fields
-            addCustomerReservationVipAdvancedReportFields(report, entry);
+        // CustomerReservationVipAdvancedReport fields
+        addCustomerReservationVipAdvancedReportFields(report, statistics);
 
-            reportList.add(report);
-        }
+        return report;
     }
 
     /**
      * Add CustomerReservationBasicReport fields to the report.
      *
      * @param report
-     * @param entry
+     * @param statistics
      */
     private void addCustomerReservationBasicReportFields(CustomerReservationReport report,
-                                                         Entry<String, Map<String, Object>> entry) {
-        report.setName(entry.getKey());
-        report.setNum_of_visit(
-                (Integer) entry.getValue().get(CustomerReservationBasicReportField.NUM_OF_VISIT.getField()));
-        report.setTotal_spend(
-                (BigDecimal) (entry.getValue().get(CustomerReservationBasicReportField.TOTAL_SPEND.getField())));
+                                                         CustomerStatistics statistics) {
+        report.setName(statistics.getName());
+        report.setNum_of_visit(statistics.getNumOfVisit());
+        report.setTotal_spend(statistics.getTotalSpend());
     }
 
     /**
      * Add CustomerReservationAdvancedReport fields to the report.
      *
      * @param report
-     * @param entry
+     * @param statistics
      */
     private void addCustomerReservationAdvancedReportFields(CustomerReservationAdvancedReport report,
-                                                            Entry<String, Map<String, Object>> entry) {
-        report.setMax_party_size(100);
+                                                            CustomerStatistics statistics) {
+        // Tracked by the same aggregation pass which counts the visits and sums the spend
+        report.setMax_party_size(statistics.getMaxPartySize());
     }
 
     /**
      * Add CustomerReservationVipAdvancedReport fields to the report.
      *
      * @param report
-     * @param entry
+     * @param statistics
      */
     private void addCustomerReservationVipAdvancedReportFields(CustomerReservationVipAdvancedReport report,
-                                                               Entry<String, Map<String, Object>> entry) {
+                                                               CustomerStatistics statistics) {
         report.setVip_credit(200);
     }
+
+    /**
+     * Parse a search criteria date.
+     *
+     * @param dateStr
+     * @return The date, or null if there is no such criteria, which leaves that end of the period open
+     */
+    private LocalDate parseDate(String dateStr) {
+        return dateStr == null ? null : LocalDate.parse(dateStr);
+    }
 }
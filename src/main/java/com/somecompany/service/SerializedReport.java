@@ -0,0 +1,22 @@
+package com.somecompany.service;
+
+import lombok.Getter;
+
+/**
+ * A report already encoded as a UTF-8 JSON body, together with its strong entity tag.
+ *
+ * @author patrick
+ */
+@Getter
+public class SerializedReport {
+
+    private final byte[] body;
+
+    // Quoted hex digest of the body
+    private final String etag;
+
+    public SerializedReport(byte[] body, String etag) {
+        this.body = body;
+        this.etag = etag;
+    }
+}
@@ -0,0 +1,99 @@
+package com.somecompany.service;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Deduplicates concurrent calls with the same key, so that only the first runs and the others wait for and share its
+ * result.<br/>
+ * A key is only in flight while its call runs, so later calls always run again.
+ *
+ * @param <K> The key type
+ * @param <V> The result type
+ * @author patrick
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    // Counts the calls which shared the result of another call
+    private final Counter coalescedCounter;
+
+    public SingleFlight(Counter coalescedCounter) {
+        this.coalescedCounter = coalescedCounter;
+    }
+
+    /**
+     * Run a call, or wait for the identical call already in flight.
+     *
+     * @param key    Identifies identical calls
+     * @param loader Produces the result
+     * @return The result of the call which ran
+     * @throws IOException If the call which ran failed with it
+     */
+    public V execute(K key, Loader<V> loader) throws IOException {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlightFuture = inFlight.putIfAbsent(key, future);
+
+        if (inFlightFuture != null) {
+            coalescedCounter.increment();
+
+            return await(inFlightFuture);
+        }
+
+        try {
+            V value = loader.load();
+            future.complete(value);
+
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Wait for a call in flight, rethrowing its failure.
+     *
+     * @param future
+     * @return The result of the call
+     * @throws IOException
+     */
+    private V await(CompletableFuture<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an identical request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw (RuntimeException) cause;
+        }
+    }
+
+    /**
+     * Produces the result of a call.
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+
+        V load() throws IOException;
+    }
+}
@@ -0,0 +1,85 @@
+package com.somecompany;
+
+import com.somecompany.model.CustomerReservationBasicReport;
+import com.somecompany.service.ReportExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {"report.async.core-pool-size=1",
+        "report.async.max-pool-size=1", "report.async.queue-capacity=0"})
+@ActiveProfiles("dev")
+public class AsyncReportTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate testRestTemplate;
+
+    @Autowired
+    private ReportExecutor reportExecutor;
+
+    @Test
+    public void shouldBeAbleToGetCustomerReservationReportAsynchronouslyThroughAPI() {
+        ResponseEntity<List<CustomerReservationBasicReport>> responseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation/report/async?reportName=CustomerReservationBasicReport",
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<CustomerReservationBasicReport>>() {
+                });
+
+        // Assertion
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals(2, responseEntity.getBody().size());
+        assertEquals("Felix Fish", responseEntity.getBody().get(0).getName());
+        assertEquals("Harry Houdini", responseEntity.getBody().get(1).getName());
+    }
+
+    @Test
+    public void shouldRejectAsyncReportWithServiceUnavailableWhenReportPoolIsSaturated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Occupy the only report thread, with no queue behind it
+        CompletableFuture<Boolean> blocker = reportExecutor.submit(() -> {
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+
+        try {
+            ResponseEntity<Object> responseEntity = testRestTemplate.exchange(
+                    "http://localhost:" + port
+                            + "/api/reservation/report/async?reportName=CustomerReservationBasicReport",
+                    HttpMethod.GET, null, new ParameterizedTypeReference<Object>() {
+                    });
+
+            // Assertion
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, responseEntity.getStatusCode());
+            assertEquals("1", responseEntity.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+            assertEquals("SERVICE_UNAVAILABLE",
+                    ((LinkedHashMap<String, String>) responseEntity.getBody()).get("status"));
+        } finally {
+            release.countDown();
+            blocker.get();
+        }
+    }
+}
@@ -1,5 +1,16 @@
 package com.somecompany;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.somecompany.model.CustomerReservationBasicReport;
+import com.somecompany.model.CustomerReservationReport;
+import com.somecompany.model.CustomerStatistics;
+import com.somecompany.model.Reservation;
+import com.somecompany.repository.ColumnarReservationStore;
+import com.somecompany.repository.ReservationReader;
+import com.somecompany.repository.ReservationSnapshot;
+import com.somecompany.service.CustomerReservationReportCache;
+import com.somecompany.service.RestaurantService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -7,11 +18,29 @@ import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.StreamUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -26,6 +55,21 @@ public class CustomerReservationReportTest {
     @Autowired
     private TestRestTemplate testRestTemplate;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ReservationReader reservationReader;
+
+    @Autowired
+    private RestaurantService restaurantService;
+
+    @Autowired
+    private CustomerReservationReportCache customerReservationReportCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     public void shouldBeAbleToCatchValidationExceptionWhenGetCustomerReservationReportThroughAPICallWithQuestionMarkAppended() {
         ResponseEntity<Object> responseEntity = testRestTemplate.exchange(
@@ -116,4 +160,297 @@ public class CustomerReservationReportTest {
         assertThat(((LinkedHashMap<String, String>) responseEntity.getBody()).get("message")
                 .contains("End date must have the pattern 'YYYY-MM-DD'"));
     }
+
+    @Test
+    public void shouldBeAbleToGetNotModifiedWhenGetCustomerReservationReportThroughAPICallWithMatchingETag() {
+        String url = "http://localhost:" + port + "/api/reservation/report?reportName=CustomerReservationBasicReport";
+
+        ResponseEntity<String> responseEntity = testRestTemplate.exchange(url, HttpMethod.GET, null, String.class);
+        String etag = responseEntity.getHeaders().getETag();
+
+        // Assertion
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertThat(etag).isNotNull();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        ResponseEntity<String> conditionalResponseEntity = testRestTemplate.exchange(url, HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+
+        // Assertion
+        assertEquals(HttpStatus.NOT_MODIFIED, conditionalResponseEntity.getStatusCode());
+        assertThat(conditionalResponseEntity.getBody()).isNull();
+    }
+
+    @Test
+    public void shouldBeAbleToGetCustomerReservationReportOfUploadedReservationsThroughAPI() throws IOException {
+        byte[] reservations;
+        try (InputStream inputStream = getClass().getResourceAsStream("/sample/reservations-test.json")) {
+            reservations = StreamUtils.copyToByteArray(inputStream);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        ResponseEntity<List<CustomerReservationBasicReport>> responseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port
+                        + "/api/reservation/report?reportName=CustomerReservationBasicReport&endDate=2020-11-25",
+                HttpMethod.POST, new HttpEntity<>(reservations, headers),
+                new ParameterizedTypeReference<List<CustomerReservationBasicReport>>() {
+                });
+
+        // Expected result
+        CustomerReservationBasicReport expectedReport = new CustomerReservationBasicReport();
+        expectedReport.setName("Harry Houdini");
+        expectedReport.setNum_of_visit(2);
+        expectedReport.setTotal_spend(new BigDecimal("146.37"));
+
+        // Assertion
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals(Collections.singletonList(expectedReport), responseEntity.getBody());
+    }
+
+    @Test
+    public void shouldBeAbleToStreamCustomerReservationReportThroughAPI() {
+        ResponseEntity<List<CustomerReservationBasicReport>> responseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation/report/stream?reportName=CustomerReservationBasicReport",
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<CustomerReservationBasicReport>>() {
+                });
+
+        // Assertion
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals(2, responseEntity.getBody().size());
+        assertEquals("Felix Fish", responseEntity.getBody().get(0).getName());
+        assertEquals("Harry Houdini", responseEntity.getBody().get(1).getName());
+    }
+
+    @Test
+    public void shouldBeAbleToStreamCustomerReservationReportAsNdjsonWithOffsetAndLimitThroughAPI() throws IOException {
+        ResponseEntity<String> responseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation/report/stream?reportName=CustomerReservationBasicReport"
+                        + "&format=ndjson&offset=1&limit=1",
+                HttpMethod.GET, null, String.class);
+
+        String[] lines = responseEntity.getBody().split("\n");
+
+        // Expected result
+        CustomerReservationBasicReport expectedReport = new CustomerReservationBasicReport();
+        expectedReport.setName("Harry Houdini");
+        expectedReport.setNum_of_visit(2);
+        expectedReport.setTotal_spend(new BigDecimal("146.37"));
+
+        // Assertion
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals(MediaType.APPLICATION_NDJSON, responseEntity.getHeaders().getContentType());
+        assertEquals(1, lines.length);
+        assertEquals(expectedReport, objectMapper.readValue(lines[0], CustomerReservationBasicReport.class));
+    }
+
+    @Test
+    public void shouldBeAbleToGetTopCustomersByTotalSpendThroughAPI() {
+        ResponseEntity<List<CustomerReservationBasicReport>> responseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port
+                        + "/api/reservation/report?reportName=CustomerReservationBasicReport&top=2&orderBy=total_spend",
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<CustomerReservationBasicReport>>() {
+                });
+
+        // Assertion
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals(2, responseEntity.getBody().size());
+        assertEquals("Harry Houdini", responseEntity.getBody().get(0).getName());
+        assertEquals(new BigDecimal("146.37"), responseEntity.getBody().get(0).getTotal_spend());
+        assertEquals("Felix Fish", responseEntity.getBody().get(1).getName());
+    }
+
+    @Test
+    public void shouldBeAbleToGetTopCustomerByNumOfVisitWithinTimePeriodThroughService() throws IOException {
+        List<CustomerReservationReport> resultList = restaurantService
+                .getTopCustomerReservationReport("CustomerReservationBasicReport", "2020-11-20", null, 1,
+                        "num_of_visit");
+
+        // Expected result
+        CustomerReservationBasicReport expectedReport = new CustomerReservationBasicReport();
+        expectedReport.setName("Felix Fish");
+        expectedReport.setNum_of_visit(1);
+        expectedReport.setTotal_spend(new BigDecimal("97.84"));
+
+        // Assertion
+        assertEquals(Collections.singletonList(expectedReport), resultList);
+    }
+
+    @Test
+    public void shouldBeAbleToCatchValidationExceptionWhenGetTopCustomersThroughAPICallWhereOrderByIsUnknown() {
+        ResponseEntity<Object> responseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port
+                        + "/api/reservation/report?reportName=CustomerReservationBasicReport&top=1&orderBy=name",
+                HttpMethod.GET, null, new ParameterizedTypeReference<Object>() {
+                });
+
+        // Assertion
+        assertEquals("BAD_REQUEST", ((LinkedHashMap<String, String>) responseEntity.getBody()).get("status"));
+        assertThat(((LinkedHashMap<String, String>) responseEntity.getBody()).get("message")
+                .contains("Order by must be 'total_spend' or 'num_of_visit'"));
+    }
+
+    @Test
+    public void shouldAggregateIdenticalCustomerStatisticsInParallelAndSequentially() throws IOException {
+        List<Reservation> reservationList = new ArrayList<>();
+
+        try (InputStream inputStream = getClass().getResourceAsStream("/sample/reservations.json")) {
+            reservationReader.read(inputStream, reservationList::add);
+        }
+
+        ReservationSnapshot snapshot = new ReservationSnapshot(reservationList, 0);
+
+        List<LocalDate> dateList = new ArrayList<>();
+        dateList.add(null);
+
+        for (LocalDate date = LocalDate.parse("2020-10-31"); date.isBefore(LocalDate.parse("2020-12-02"));
+             date = date.plusDays(1)) {
+            dateList.add(date);
+        }
+
+        for (LocalDate startDate : dateList) {
+            for (LocalDate endDate : dateList) {
+                Map<String, CustomerStatistics> expectedMap = snapshot.getCustomerStatistics(startDate, endDate);
+
+                // A threshold of a single reservation splits the period down to single days
+                Map<String, CustomerStatistics> actualMap = snapshot.getCustomerStatistics(startDate, endDate,
+                        ForkJoinPool.commonPool(), 1);
+
+                // Assertion
+                assertSameCustomerStatistics(expectedMap, actualMap);
+            }
+        }
+    }
+
+    @Test
+    public void shouldQueryIdenticalReservationsFromColumnarStorage() throws IOException {
+        List<Reservation> reservationList = new ArrayList<>();
+
+        try (InputStream inputStream = getClass().getResourceAsStream("/sample/reservations.json")) {
+            reservationReader.read(inputStream, reservationList::add);
+        }
+
+        ReservationSnapshot snapshot = new ReservationSnapshot(reservationList, 0);
+
+        ColumnarReservationStore.Builder builder = new ColumnarReservationStore.Builder();
+        reservationList.forEach(builder::add);
+        ColumnarReservationStore columnarStore = builder.build(0);
+
+        List<LocalDate> dateList = new ArrayList<>();
+        dateList.add(null);
+
+        for (LocalDate date = LocalDate.parse("2020-10-31"); date.isBefore(LocalDate.parse("2020-12-02"));
+             date = date.plusDays(1)) {
+            dateList.add(date);
+        }
+
+        // Assertion
+        assertEquals(snapshot.getReservations(), columnarStore.getReservations());
+
+        for (LocalDate startDate : dateList) {
+            for (LocalDate endDate : dateList) {
+                assertEquals(snapshot.findByScheduledDate(startDate, endDate),
+                        columnarStore.findByScheduledDate(startDate, endDate));
+
+                Map<String, CustomerStatistics> expectedMap = snapshot.getCustomerStatistics(startDate, endDate);
+
+                assertSameCustomerStatistics(expectedMap,
+                        columnarStore.getCustomerStatistics(startDate, endDate, null, Integer.MAX_VALUE));
+                assertSameCustomerStatistics(expectedMap,
+                        columnarStore.getCustomerStatistics(startDate, endDate, ForkJoinPool.commonPool(), 1));
+            }
+        }
+    }
+
+    private void assertSameCustomerStatistics(Map<String, CustomerStatistics> expectedMap,
+                                              Map<String, CustomerStatistics> actualMap) {
+        assertEquals(expectedMap.keySet(), actualMap.keySet());
+
+        expectedMap.forEach((guestId, expected) -> {
+            CustomerStatistics actual = actualMap.get(guestId);
+
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getNumOfVisit(), actual.getNumOfVisit());
+            assertEquals(expected.getTotalSpend(), actual.getTotalSpend());
+            assertEquals(expected.getMaxPartySize(), actual.getMaxPartySize());
+        });
+    }
+
+    @Test
+    public void shouldCoalesceIdenticalConcurrentReportRequests() throws Exception {
+        double coalescedBefore = meterRegistry.counter("report.requests.coalesced").count();
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        CustomerReservationReportCache.ReportLoader reportLoader = () -> {
+            loadCount.incrementAndGet();
+
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return Collections.emptyList();
+        };
+
+        CompletableFuture<List<CustomerReservationReport>> firstRequest = CompletableFuture.supplyAsync(
+                () -> getCoalescingTestReport(reportLoader));
+        CompletableFuture<List<CustomerReservationReport>> secondRequest = CompletableFuture.supplyAsync(
+                () -> getCoalescingTestReport(reportLoader));
+
+        // Wait for one request to join the other in flight
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (meterRegistry.counter("report.requests.coalesced").count() == coalescedBefore
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        release.countDown();
+
+        // Assertion
+        assertEquals(firstRequest.get(), secondRequest.get());
+        assertEquals(1, loadCount.get());
+        assertEquals(coalescedBefore + 1, meterRegistry.counter("report.requests.coalesced").count());
+    }
+
+    private List<CustomerReservationReport> getCoalescingTestReport(
+            CustomerReservationReportCache.ReportLoader reportLoader) {
+        try {
+            return customerReservationReportCache.get("CoalescingTestReport", "2020-11-01", "2020-11-30",
+                    reportLoader);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void shouldExposeReportStageMetricsTaggedByReportName() {
+        testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation/report?reportName=CustomerReservationBasicReport"
+                        + "&startDate=2020-11-01&endDate=2020-11-02",
+                HttpMethod.GET, null, String.class);
+
+        // Assertion
+        for (String metricName : new String[]{"report.aggregation", "report.aggregation.customers",
+                "report.assembly"}) {
+            ResponseEntity<Map<String, Object>> responseEntity = testRestTemplate.exchange(
+                    "http://localhost:" + port + "/actuator/metrics/" + metricName
+                            + "?tag=reportName:customerreservationbasicreport",
+                    HttpMethod.GET, null, new ParameterizedTypeReference<Map<String, Object>>() {
+                    });
+
+            assertEquals(HttpStatus.OK, responseEntity.getStatusCode(), metricName);
+        }
+
+        ResponseEntity<Map<String, Object>> responseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/actuator/metrics/reservation.repository.load.records",
+                HttpMethod.GET, null, new ParameterizedTypeReference<Map<String, Object>>() {
+                });
+
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    }
 }
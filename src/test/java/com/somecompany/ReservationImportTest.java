@@ -0,0 +1,148 @@
+package com.somecompany;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.somecompany.model.CustomerReservationBasicReport;
+import com.somecompany.model.Guest;
+import com.somecompany.model.Reservation;
+import com.somecompany.model.ReservationImportProgress;
+import com.somecompany.repository.ReservationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {"reservation.import.chunk-lines=2",
+        "reservation.import.batch-size=3"})
+@ActiveProfiles("dev")
+public class ReservationImportTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate testRestTemplate;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void shouldImportReservationsInBulkReportingMalformedLines() throws IOException {
+        long countBefore = reservationRepository.count();
+
+        Reservation reservationWithoutGuest = createReservation("9305", "2020-12-10", "9300", "Mia Moore", "50.00");
+        reservationWithoutGuest.setGuest(null);
+
+        String body = String.join("\n",
+                toJson(createReservation("9301", "2020-12-10", "9300", "Mia Moore", "10.00")),
+                "{\"reservation_id\": \"9302\",",
+                "",
+                toJson(createReservation("9303", "2020-12-11", "9300", "Mia Moore", "20.00")),
+                toJson(reservationWithoutGuest),
+                toJson(createReservation("9304", "2020-12-12", "9301", "Noah Nash", "30.00")),
+                toJson(createReservation("9306", "2020-12-13", "9300", "Mia Moore", "40.00")));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+
+        ResponseEntity<String> responseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation/bulk", HttpMethod.POST,
+                new HttpEntity<>(body, headers), String.class);
+
+        List<ReservationImportProgress> progressList = new ArrayList<>();
+
+        for (String line : responseEntity.getBody().split("\n")) {
+            progressList.add(objectMapper.readValue(line, ReservationImportProgress.class));
+        }
+
+        ResponseEntity<List<CustomerReservationBasicReport>> reportResponseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation/report?reportName=CustomerReservationBasicReport"
+                        + "&startDate=2020-12-10&endDate=2020-12-13",
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<CustomerReservationBasicReport>>() {
+                });
+
+        // Assertion
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals(3, progressList.size());
+
+        // Errors are reported after the chunk of lines they are in
+        ReservationImportProgress progress = progressList.get(0);
+        assertEquals(2, progress.getLines());
+        assertEquals(0, progress.getAccepted());
+        assertEquals(1, progress.getRejected());
+        assertEquals(1, progress.getErrors().size());
+        assertEquals(2, progress.getErrors().get(0).getLine());
+        assertFalse(progress.isComplete());
+
+        // The first batch of three is added after the first six lines
+        progress = progressList.get(1);
+        assertEquals(6, progress.getLines());
+        assertEquals(3, progress.getAccepted());
+        assertEquals(2, progress.getRejected());
+        assertEquals(1, progress.getErrors().size());
+        assertEquals(5, progress.getErrors().get(0).getLine());
+        assertEquals("Guest id is required", progress.getErrors().get(0).getMessage());
+        assertFalse(progress.isComplete());
+
+        ReservationImportProgress finalProgress = progressList.get(2);
+        assertEquals(7, finalProgress.getLines());
+        assertEquals(4, finalProgress.getAccepted());
+        assertEquals(2, finalProgress.getRejected());
+        assertTrue(finalProgress.getErrors().isEmpty());
+        assertTrue(finalProgress.isComplete());
+
+        // Added in line order
+        assertEquals(countBefore + 4, reservationRepository.count());
+        assertEquals(Arrays.asList("9301", "9303", "9304", "9306"), reservationRepository.findAll()
+                .subList((int) countBefore, (int) countBefore + 4).stream().map(Reservation::getReservation_id)
+                .collect(Collectors.toList()));
+
+        assertEquals(2, reportResponseEntity.getBody().size());
+        assertEquals("Mia Moore", reportResponseEntity.getBody().get(0).getName());
+        assertEquals(new BigDecimal("70.00"), reportResponseEntity.getBody().get(0).getTotal_spend());
+        assertEquals(new BigDecimal("30.00"), reportResponseEntity.getBody().get(1).getTotal_spend());
+    }
+
+    private String toJson(Reservation reservation) throws IOException {
+        return objectMapper.writeValueAsString(reservation);
+    }
+
+    private Reservation createReservation(String reservationId, String scheduledDate, String guestId,
+                                          String guestName, String totalSpend) {
+        Guest guest = new Guest();
+        guest.setId(guestId);
+        guest.setName(guestName);
+
+        Reservation reservation = new Reservation();
+        reservation.setReservation_id(reservationId);
+        reservation.setParty_size(2);
+        reservation.setScheduled_date(scheduledDate);
+        reservation.setTotal_spend(new BigDecimal(totalSpend));
+        reservation.setGuest(guest);
+
+        return reservation;
+    }
+}
@@ -0,0 +1,92 @@
+package com.somecompany;
+
+import com.somecompany.model.CustomerReservationReport;
+import com.somecompany.model.Reservation;
+import com.somecompany.service.RestaurantService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The budget is weighed by the estimated size of a reservation object
+@SpringBootTest(properties = {"dataSource=/sample/partitioned", "reservation.storage=objects",
+        "reservation.partition.memory-budget=700B", "report.cache.enabled=false"})
+@ActiveProfiles("dev")
+public class ReservationPartitionEvictionTest {
+
+    @Autowired
+    private RestaurantService restaurantService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void shouldReadEvictedPartitionsAgainOnDemand() throws IOException {
+        // The budget holds a single partition, so going round the months evicts each one before it is queried again
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Arrays.asList("5fb66b847113651a1eb742e3", "5fb66b847113651a1eb742e4"),
+                    getReservationIds(restaurantService.getReservationsByScheduledDate("2020-10-01", "2020-10-31")));
+            assertEquals(Arrays.asList("5fb66b846d7e1ba76c29a329", "5fb66b847da0da570d45da41"),
+                    getReservationIds(restaurantService.getReservationsByScheduledDate("2020-11-01", "2020-11-30")));
+            assertEquals(Arrays.asList("5fb66b847113651a1eb742e5"),
+                    getReservationIds(restaurantService.getReservationsByScheduledDate("2020-12-01", "2020-12-31")));
+        }
+
+        // Assertion
+        assertTrue(getPartitionRecordsLoaded() >= 4);
+    }
+
+    @Test
+    public void shouldReportWholePartitionsFromTheirRollups() throws IOException {
+        double recordsLoaded = getPartitionRecordsLoaded();
+
+        List<CustomerReservationReport> reportList = restaurantService
+                .getCustomerReservationReport("CustomerReservationBasicReport", "2020-10-01", "2020-12-31");
+
+        // Assertion
+        assertEquals(recordsLoaded, getPartitionRecordsLoaded());
+
+        assertEquals(3, reportList.size());
+        assertEquals("Felix Fish", reportList.get(0).getName());
+        assertEquals(new BigDecimal("137.84"), reportList.get(0).getTotal_spend());
+        assertEquals("Harry H. Houdini", reportList.get(2).getName());
+        assertEquals(2, reportList.get(2).getNum_of_visit());
+    }
+
+    @Test
+    public void shouldReportPartitionsAtTheEdgesOfAPeriodFromTheirReservations() throws IOException {
+        List<CustomerReservationReport> reportList = restaurantService
+                .getCustomerReservationReport("CustomerReservationBasicReport", "2020-10-15", "2020-11-30");
+
+        // Assertion
+        assertEquals(3, reportList.size());
+        assertEquals("Felix Fish", reportList.get(0).getName());
+        assertEquals(1, reportList.get(0).getNum_of_visit());
+        assertEquals("Gina Grant", reportList.get(1).getName());
+        assertEquals(new BigDecimal("20.25"), reportList.get(1).getTotal_spend());
+        assertEquals("Harry Houdini", reportList.get(2).getName());
+        assertEquals(new BigDecimal("83.87"), reportList.get(2).getTotal_spend());
+    }
+
+    private double getPartitionRecordsLoaded() {
+        Counter counter = meterRegistry.find("reservation.repository.load.records").tag("source", "partition")
+                .counter();
+
+        return counter == null ? 0 : counter.count();
+    }
+
+    private List<String> getReservationIds(List<Reservation> reservationList) {
+        return reservationList.stream().map(Reservation::getReservation_id).collect(Collectors.toList());
+    }
+}
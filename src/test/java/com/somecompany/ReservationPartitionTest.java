@@ -0,0 +1,167 @@
+package com.somecompany;
+
+import com.somecompany.model.CustomerReservationReport;
+import com.somecompany.model.Guest;
+import com.somecompany.model.Reservation;
+import com.somecompany.repository.InMemoryReservationRepository;
+import com.somecompany.service.RestaurantService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {"dataSource=/sample/partitioned", "reservation.partition.load-threads=2",
+        "reservation.log.merge-threshold=1"})
+@ActiveProfiles("dev")
+public class ReservationPartitionTest {
+
+    @Autowired
+    private RestaurantService restaurantService;
+
+    @Autowired
+    private InMemoryReservationRepository reservationRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void shouldLoadPartitionsInFileNameOrder() throws IOException {
+        // Assertion
+        assertEquals(Arrays.asList("5fb66b847113651a1eb742e3", "5fb66b847113651a1eb742e4", "5fb66b846d7e1ba76c29a329",
+                "5fb66b847da0da570d45da41", "5fb66b847113651a1eb742e5"),
+                getReservationIds(restaurantService.getAllReservations()));
+        assertEquals(Arrays.asList("5fb66b846d7e1ba76c29a329", "5fb66b847da0da570d45da41"),
+                getReservationIds(restaurantService.getReservationsByScheduledDate("2020-11-01", "2020-11-30")));
+        assertEquals(Arrays.asList("5fb66b847113651a1eb742e4", "5fb66b846d7e1ba76c29a329",
+                "5fb66b847da0da570d45da41", "5fb66b847113651a1eb742e5"),
+                getReservationIds(restaurantService.getReservationsByScheduledDate("2020-10-15", null)));
+    }
+
+    @Test
+    public void shouldReportAcrossPartitions() throws IOException {
+        List<CustomerReservationReport> reportList = restaurantService
+                .getCustomerReservationReport("CustomerReservationBasicReport", null, null);
+        List<CustomerReservationReport> laterReportList = restaurantService
+                .getCustomerReservationReport("CustomerReservationBasicReport", "2020-10-15", "2020-12-31");
+
+        // Assertion
+        // Named after their earliest reservation, in the earliest partition
+        assertEquals(3, reportList.size());
+        assertReport("Felix Fish", 2, "137.84", reportList.get(0));
+        assertReport("Gina Grant", 1, "20.25", reportList.get(1));
+        assertReport("Harry H. Houdini", 2, "146.37", reportList.get(2));
+
+        assertEquals(3, laterReportList.size());
+        assertReport("Felix Fish", 2, "137.84", laterReportList.get(0));
+        assertReport("Gina Grant", 1, "20.25", laterReportList.get(1));
+        assertReport("Harry Houdini", 1, "83.87", laterReportList.get(2));
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldKeepPartitionsWhenMergingWrittenReservations() throws IOException {
+        restaurantService.addReservations(Arrays.asList(
+                createReservation("9501", "2020-11-21", "1005", "Gina Grant", "5.75"),
+                createReservation("9502", "2021-01-02", "9500", "Ivan Ives", "30.00")));
+        reservationRepository.awaitMerge();
+
+        // Assertion
+        assertEquals(7, reservationRepository.count());
+        assertEquals(Arrays.asList("5fb66b846d7e1ba76c29a329", "5fb66b847da0da570d45da41", "9501"),
+                getReservationIds(restaurantService.getReservationsByScheduledDate("2020-11-01", "2020-11-30")));
+
+        List<CustomerReservationReport> reportList = restaurantService
+                .getCustomerReservationReport("CustomerReservationBasicReport", "2020-11-01", null);
+
+        assertEquals(4, reportList.size());
+        assertReport("Gina Grant", 1, "5.75", reportList.get(1));
+        assertReport("Ivan Ives", 1, "30.00", reportList.get(3));
+
+        // Written reservations are carried over a reload of the partitions
+        reservationRepository.reload();
+
+        assertEquals(7, reservationRepository.count());
+        assertEquals("9502", reservationRepository.findAll().get(6).getReservation_id());
+    }
+
+    @Test
+    public void shouldReleaseReplacedPartitionsOnReload() throws IOException {
+        // Every partition is made resident, whether or not it was parsed on startup
+        restaurantService.getAllReservations().forEach(reservation -> {
+        });
+        double cacheSize = getPartitionCacheSize();
+
+        reservationRepository.reload();
+        restaurantService.getAllReservations().forEach(reservation -> {
+        });
+
+        // Assertion
+        // The reloaded partitions take the place of the replaced ones in the cache
+        assertEquals(3, cacheSize);
+        assertEquals(cacheSize, getPartitionCacheSize());
+    }
+
+    @Test
+    public void shouldDescribePartitionsWithoutParsingThemOnReload() throws IOException {
+        double recordsLoaded = getDataSourceRecordsLoaded();
+
+        reservationRepository.reload();
+
+        List<CustomerReservationReport> reportList = restaurantService
+                .getCustomerReservationReport("CustomerReservationBasicReport", "2020-10-01", "2020-12-31");
+
+        // Assertion
+        // Described from the descriptions written on startup, and reported from their rollups
+        assertEquals(recordsLoaded, getDataSourceRecordsLoaded());
+
+        assertEquals(5, reservationRepository.count());
+        assertEquals(3, reportList.size());
+        assertReport("Felix Fish", 2, "137.84", reportList.get(0));
+        assertReport("Harry H. Houdini", 2, "146.37", reportList.get(2));
+    }
+
+    private double getDataSourceRecordsLoaded() {
+        return meterRegistry.get("reservation.repository.load.records").tag("source", "datasource").counter()
+                .count();
+    }
+
+    private double getPartitionCacheSize() {
+        return meterRegistry.get("cache.size").tag("cache", "reservationPartitions").gauge().value();
+    }
+
+    private void assertReport(String name, int numOfVisit, String totalSpend, CustomerReservationReport report) {
+        assertEquals(name, report.getName());
+        assertEquals(numOfVisit, report.getNum_of_visit());
+        assertEquals(new BigDecimal(totalSpend), report.getTotal_spend());
+    }
+
+    private List<String> getReservationIds(List<Reservation> reservationList) {
+        return reservationList.stream().map(Reservation::getReservation_id).collect(Collectors.toList());
+    }
+
+    private Reservation createReservation(String reservationId, String scheduledDate, String guestId,
+                                          String guestName, String totalSpend) {
+        Guest guest = new Guest();
+        guest.setId(guestId);
+        guest.setName(guestName);
+
+        Reservation reservation = new Reservation();
+        reservation.setReservation_id(reservationId);
+        reservation.setParty_size(2);
+        reservation.setScheduled_date(scheduledDate);
+        reservation.setTotal_spend(new BigDecimal(totalSpend));
+        reservation.setGuest(guest);
+
+        return reservation;
+    }
+}
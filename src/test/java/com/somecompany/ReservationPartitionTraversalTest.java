@@ -0,0 +1,59 @@
+package com.somecompany;
+
+import com.somecompany.model.Reservation;
+import com.somecompany.service.RestaurantService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The budget is smaller than any partition, so a partition is evicted as soon as it is read
+@SpringBootTest(properties = {"dataSource=/sample/partitioned", "reservation.storage=objects",
+        "reservation.partition.memory-budget=1B", "report.cache.enabled=false"})
+@ActiveProfiles("dev")
+public class ReservationPartitionTraversalTest {
+
+    @Autowired
+    private RestaurantService restaurantService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void shouldReadEachPartitionOncePerTraversal() throws IOException {
+        double recordsLoaded = getPartitionRecordsLoaded();
+
+        List<String> reservationIds = new ArrayList<>();
+
+        for (Reservation reservation : restaurantService.getAllReservations()) {
+            reservationIds.add(reservation.getReservation_id());
+        }
+
+        // Assertion
+        assertEquals(Arrays.asList("5fb66b847113651a1eb742e3", "5fb66b847113651a1eb742e4", "5fb66b846d7e1ba76c29a329",
+                "5fb66b847da0da570d45da41", "5fb66b847113651a1eb742e5"), reservationIds);
+        // Each of the partitions is read again once, rather than once per reservation
+        assertEquals(recordsLoaded + 5, getPartitionRecordsLoaded());
+
+        List<Reservation> copiedList = new ArrayList<>(restaurantService.getAllReservations());
+
+        assertEquals(5, copiedList.size());
+        assertEquals(recordsLoaded + 10, getPartitionRecordsLoaded());
+    }
+
+    private double getPartitionRecordsLoaded() {
+        Counter counter = meterRegistry.find("reservation.repository.load.records").tag("source", "partition")
+                .counter();
+
+        return counter == null ? 0 : counter.count();
+    }
+}
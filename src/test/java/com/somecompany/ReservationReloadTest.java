@@ -0,0 +1,73 @@
+package com.somecompany;
+
+import com.somecompany.model.CustomerReservationReport;
+import com.somecompany.service.RestaurantService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("dev")
+public class ReservationReloadTest {
+
+    private static final String SINGLE_RESERVATION = "[{\"reservation_id\": \"5fb66b846d7e1ba76c29a329\","
+            + "\"party_size\": 6, \"scheduled_date\": \"2020-11-26\", \"total_spend\": 97.84,"
+            + "\"guest\": {\"id\": \"1004\", \"name\": \"Felix Fish\"}}]";
+
+    private static Path dataSourceFile;
+
+    @Autowired
+    private RestaurantService restaurantService;
+
+    @DynamicPropertySource
+    static void dataSourceProperties(DynamicPropertyRegistry registry) throws IOException {
+        dataSourceFile = Files.createTempFile("reservations", ".json");
+        dataSourceFile.toFile().deleteOnExit();
+        Files.write(dataSourceFile, SINGLE_RESERVATION.getBytes());
+
+        registry.add("dataSource", () -> "file:" + dataSourceFile);
+        registry.add("reservation.reload.enabled", () -> "true");
+        registry.add("reservation.reload.quiet-period", () -> "100ms");
+    }
+
+    @Test
+    public void shouldReloadReservationsWhenDataSourceChanges() throws Exception {
+        assertEquals(1, restaurantService.getAllReservations().size());
+        // Cache the report of the original reservations
+        assertEquals(1, restaurantService.getCustomerReservationReport("CustomerReservationBasicReport", null, null)
+                .size());
+
+        // Replace the datasource with the 3 reservations test file
+        Path replacement = Files.createTempFile(dataSourceFile.getParent(), "reservations", ".tmp");
+        try (InputStream inputStream = getClass().getResourceAsStream("/sample/reservations-test.json")) {
+            Files.copy(inputStream, replacement, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(replacement, dataSourceFile, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        // Wait for the background reload, which also invalidates the cached report
+        List<CustomerReservationReport> reportList = restaurantService
+                .getCustomerReservationReport("CustomerReservationBasicReport", null, null);
+        for (int i = 0; i < 100 && reportList.size() != 2; i++) {
+            Thread.sleep(100);
+            reportList = restaurantService.getCustomerReservationReport("CustomerReservationBasicReport", null, null);
+        }
+
+        assertEquals(2, reportList.size());
+        assertEquals("Felix Fish", reportList.get(0).getName());
+        assertEquals("Harry Houdini", reportList.get(1).getName());
+        assertEquals(3, restaurantService.getAllReservations().size());
+    }
+}
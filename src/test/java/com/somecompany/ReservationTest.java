@@ -2,9 +2,18 @@ package com.somecompany;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.somecompany.model.CustomerStatistics;
 import com.somecompany.model.Guest;
 import com.somecompany.model.Reservation;
+import com.somecompany.repository.AppendedReservationStore;
+import com.somecompany.repository.ColumnarReservationStore;
+import com.somecompany.repository.LiveCustomerStatistics;
+import com.somecompany.repository.ReservationRepository;
+import com.somecompany.repository.ReservationSnapshot;
+import com.somecompany.repository.ReservationSnapshotStore;
+import com.somecompany.repository.ReservationStore;
 import com.somecompany.service.RestaurantService;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvFileSource;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,7 +23,10 @@ import org.springframework.test.context.ActiveProfiles;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -25,6 +37,104 @@ public class ReservationTest {
     @Autowired
     private RestaurantService restaurantService;
 
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ReservationSnapshotStore snapshotStore;
+
+    @Test
+    public void shouldBeAbleToReadBackReservationsFromBinarySnapshot() {
+        // Expected result
+        List<Reservation> expectedList = reservationRepository.findAll();
+
+        snapshotStore.write(expectedList);
+
+        // Actual result
+        Optional<List<Reservation>> resultList = snapshotStore.read();
+
+        // Assertion
+        assertEquals(Optional.of(expectedList), resultList);
+    }
+
+    @Test
+    public void shouldBeAbleToReadBackColumnsFromBinarySnapshot() {
+        // Expected result
+        List<Reservation> expectedList = reservationRepository.findAll();
+
+        ColumnarReservationStore.Builder builder = new ColumnarReservationStore.Builder();
+        expectedList.forEach(builder::add);
+        snapshotStore.write(builder.build(0), expectedList.size());
+
+        // Actual result
+        Optional<ColumnarReservationStore.Builder> resultBuilder = snapshotStore.readColumns();
+
+        // Assertion
+        assertEquals(expectedList, resultBuilder.get().build(0).getReservations());
+        assertEquals(Optional.of(expectedList), snapshotStore.read());
+    }
+
+    @Test
+    public void shouldIndexWrittenReservationsInFewBatches() {
+        List<Reservation> loadedList = reservationRepository.findAll();
+        ReservationSnapshot loadedStore = new ReservationSnapshot(new ArrayList<>(loadedList), 0);
+
+        // Written one at a time
+        AppendedReservationStore appendedStore = new AppendedReservationStore(loadedStore, Collections.emptyList());
+
+        for (Reservation reservation : loadedList) {
+            appendedStore = appendedStore.append(Collections.singletonList(reservation));
+        }
+
+        // Expected result
+        List<Reservation> expectedList = new ArrayList<>(loadedList);
+        expectedList.addAll(loadedList);
+
+        // Assertion
+        // One batch per set bit of the number of written reservations
+        assertEquals(Integer.bitCount(loadedList.size()), appendedStore.getAppendedStores().size());
+        assertEquals(expectedList, appendedStore.getReservations());
+        assertEquals(expectedList, new ArrayList<>(appendedStore.findByScheduledDate(null, null)));
+
+        // The written reservations after those merged stay appended, here to a store standing in for the merged one
+        ReservationStore mergedStore = appendedStore.withLoadedStore(loadedStore, 1);
+        expectedList.remove(loadedList.size());
+
+        assertEquals(expectedList, mergedStore.getReservations());
+        assertEquals(loadedStore, appendedStore.withLoadedStore(loadedStore, loadedList.size()));
+    }
+
+    @Test
+    public void shouldNameCustomersOfWrittenReservationsAlikeInLiveStatisticsAndStores() {
+        ReservationSnapshot loadedStore = new ReservationSnapshot(new ArrayList<>(reservationRepository.findAll()), 0);
+        LiveCustomerStatistics liveStatistics = new LiveCustomerStatistics(loadedStore);
+
+        // An existing customer under another name on an earlier date, and a new customer whose later written
+        // reservation is the earliest
+        List<Reservation> writtenList = createExpectedReservationList("9601~2~2020-10-01~7.50~1004~Felix Fisher"
+                + "|9602~3~2020-12-20~12.50~9600~Olivia Owen|9603~4~2020-12-19~10.00~9600~Olivia Owens");
+
+        writtenList.forEach(liveStatistics::add);
+        AppendedReservationStore appendedStore = new AppendedReservationStore(loadedStore, Collections.emptyList())
+                .append(writtenList);
+
+        // Actual result
+        Map<String, CustomerStatistics> liveMap = liveStatistics.getCustomerStatistics();
+        Map<String, CustomerStatistics> storeMap = appendedStore.getCustomerStatistics(null, null, null,
+                Integer.MAX_VALUE);
+
+        // Assertion
+        assertEquals(storeMap.keySet(), liveMap.keySet());
+
+        for (String guestId : storeMap.keySet()) {
+            assertEquals(storeMap.get(guestId).getName(), liveMap.get(guestId).getName());
+            assertEquals(storeMap.get(guestId).getTotalSpend(), liveMap.get(guestId).getTotalSpend());
+        }
+
+        assertEquals("Felix Fish", liveMap.get("1004").getName());
+        assertEquals("Olivia Owens", liveMap.get("9600").getName());
+    }
+
     @ParameterizedTest
     @CsvFileSource(resources = "/GetAllReservationsTestData.csv", numLinesToSkip = 1)
     public void shouldBeAbleToGetAllReservations(String reservationsStr)
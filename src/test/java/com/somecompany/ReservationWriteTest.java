@@ -0,0 +1,234 @@
+package com.somecompany;
+
+import com.somecompany.model.CustomerReservationBasicReport;
+import com.somecompany.model.Guest;
+import com.somecompany.model.Reservation;
+import com.somecompany.repository.InMemoryReservationRepository;
+import com.somecompany.repository.ReservationLog;
+import com.somecompany.repository.ReservationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {"reservation.log.enabled=true",
+        "reservation.log.compaction-threshold=3", "reservation.log.merge-threshold=2"})
+@ActiveProfiles("dev")
+public class ReservationWriteTest {
+
+    private static Path logDirectory;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate testRestTemplate;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @DynamicPropertySource
+    static void logProperties(DynamicPropertyRegistry registry) throws IOException {
+        logDirectory = Files.createTempDirectory("restaurant-test");
+        registry.add("reservation.log.path", () -> logDirectory.resolve("reservations.log").toString());
+    }
+
+    @Test
+    public void shouldAddReservationThroughAPIAndIncludeItInReports() {
+        ResponseEntity<Reservation> responseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation", HttpMethod.POST,
+                new HttpEntity<>(createReservation("9001", "2020-12-24", "9001", "Ivy Irving", "45.20")),
+                Reservation.class);
+
+        ResponseEntity<List<CustomerReservationBasicReport>> reportResponseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation/report?reportName=CustomerReservationBasicReport"
+                        + "&startDate=2020-12-24&endDate=2020-12-24",
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<CustomerReservationBasicReport>>() {
+                });
+
+        // Assertion
+        assertEquals(HttpStatus.CREATED, responseEntity.getStatusCode());
+        assertEquals("9001", responseEntity.getBody().getReservation_id());
+        assertEquals(1, reportResponseEntity.getBody().size());
+        assertEquals("Ivy Irving", reportResponseEntity.getBody().get(0).getName());
+        assertEquals(new BigDecimal("45.20"), reportResponseEntity.getBody().get(0).getTotal_spend());
+    }
+
+    @Test
+    public void shouldAddBatchOfReservationsAndRecoverThemFromTheLog() throws IOException {
+        long countBefore = reservationRepository.count();
+
+        // Enough reservations to merge them into the loaded store and to compact the log
+        List<Reservation> reservationList = Arrays.asList(
+                createReservation("9101", "2020-12-01", "9100", "Jack Jones", "10.00"),
+                createReservation("9102", "2020-12-02", "9100", "Jack Jones", "20.00"),
+                createReservation("9103", "2020-11-06", "1003", "Harry Houdini", "30.00"),
+                createReservation("9104", "2020-12-03", "9101", "Kate King", "40.00"));
+
+        ResponseEntity<List<Reservation>> responseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation/batch", HttpMethod.POST,
+                new HttpEntity<>(reservationList), new ParameterizedTypeReference<List<Reservation>>() {
+                });
+
+        // Assertion
+        assertEquals(HttpStatus.CREATED, responseEntity.getStatusCode());
+        assertEquals(countBefore + 4, reservationRepository.count());
+        assertEquals(reservationList,
+                reservationRepository.findAll().subList((int) countBefore, (int) countBefore + 4));
+
+        // The written reservations are merged in the background, and read the same once merged
+        applicationContext.getBean(InMemoryReservationRepository.class).awaitMerge();
+
+        assertEquals(countBefore + 4, reservationRepository.count());
+        assertEquals(reservationList,
+                reservationRepository.findAll().subList((int) countBefore, (int) countBefore + 4));
+
+        // A record torn by a crash is dropped on recovery. The log is compacted in the background, so wait for the
+        // compaction to finish before tearing it
+        applicationContext.getBean(ReservationLog.class).awaitCompaction();
+
+        Path logPath = logDirectory.resolve("reservations.log");
+        long logSize = Files.size(logPath);
+        Files.write(logPath, new byte[]{0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+
+        List<Reservation> writtenList = new ArrayList<>(reservationRepository.findAll()
+                .subList(3, (int) reservationRepository.count()));
+
+        assertEquals(writtenList, recover());
+        assertEquals(logSize, Files.size(logPath));
+    }
+
+    @Test
+    public void shouldReportWholeHistoryFromLiveStatisticsAfterWrites() {
+        // An earlier reservation of an existing customer under another name, and a new customer
+        testRestTemplate.exchange("http://localhost:" + port + "/api/reservation/batch", HttpMethod.POST,
+                new HttpEntity<>(Arrays.asList(
+                        createReservation("9401", "2020-12-20", "9400", "Olivia Owen", "12.50"),
+                        createReservation("9402", "2020-10-01", "1004", "Felix Fisher", "7.125"),
+                        createReservation("9403", "2020-12-19", "9400", "Olivia Owens", "10.00"))),
+                new ParameterizedTypeReference<List<Reservation>>() {
+                });
+
+        // A merge renames customers after their earliest reservation, so both reports are taken after it
+        applicationContext.getBean(InMemoryReservationRepository.class).awaitMerge();
+
+        ResponseEntity<List<CustomerReservationBasicReport>> liveResponseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation/report?reportName=CustomerReservationBasicReport",
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<CustomerReservationBasicReport>>() {
+                });
+
+        // A period covering every reservation is aggregated from the stores
+        ResponseEntity<List<CustomerReservationBasicReport>> scannedResponseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation/report?reportName=CustomerReservationBasicReport"
+                        + "&startDate=1970-01-01&endDate=2999-12-31",
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<CustomerReservationBasicReport>>() {
+                });
+
+        // Assertion
+        assertEquals(HttpStatus.OK, liveResponseEntity.getStatusCode());
+        assertEquals(scannedResponseEntity.getBody(), liveResponseEntity.getBody());
+        assertEquals("Olivia Owens", liveResponseEntity.getBody().stream()
+                .filter(report -> report.getName().startsWith("Olivia")).findFirst().get().getName());
+    }
+
+    @Test
+    public void shouldNotAddReservationWithoutGuestThroughAPI() {
+        Reservation reservation = createReservation("9201", "2020-12-05", "9200", "Liam Lee", "50.00");
+        reservation.setGuest(null);
+
+        long countBefore = reservationRepository.count();
+
+        ResponseEntity<Object> responseEntity = testRestTemplate.exchange(
+                "http://localhost:" + port + "/api/reservation", HttpMethod.POST, new HttpEntity<>(reservation),
+                new ParameterizedTypeReference<Object>() {
+                });
+
+        // Assertion
+        assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        assertEquals("Guest id is required",
+                ((LinkedHashMap<String, String>) responseEntity.getBody()).get("message"));
+        assertEquals(countBefore, reservationRepository.count());
+    }
+
+    /**
+     * Recover the written reservations from the log files, as on startup.
+     *
+     * @return The written reservations
+     * @throws IOException
+     */
+    @Test
+    public void shouldRefuseToRecoverFromAFileWhichIsNotALog() throws IOException {
+        Path otherPath = logDirectory.resolve("reservations.json");
+        byte[] content = "[{\"reservation_id\": \"9401\"}]".getBytes(StandardCharsets.UTF_8);
+        Files.write(otherPath, content);
+
+        ReservationLog reservationLog = applicationContext.getAutowireCapableBeanFactory()
+                .createBean(ReservationLog.class);
+        ReflectionTestUtils.setField(reservationLog, "logPath", otherPath.toString());
+
+        try {
+            // Assertion
+            assertThrows(IOException.class, reservationLog::recover);
+            assertArrayEquals(content, Files.readAllBytes(otherPath));
+        } finally {
+            applicationContext.getAutowireCapableBeanFactory().destroyBean(reservationLog);
+        }
+    }
+
+    private List<Reservation> recover() throws IOException {
+        ReservationLog reservationLog = applicationContext.getAutowireCapableBeanFactory()
+                .createBean(ReservationLog.class);
+
+        try {
+            return reservationLog.recover();
+        } finally {
+            applicationContext.getAutowireCapableBeanFactory().destroyBean(reservationLog);
+        }
+    }
+
+    private Reservation createReservation(String reservationId, String scheduledDate, String guestId,
+                                          String guestName, String totalSpend) {
+        Guest guest = new Guest();
+        guest.setId(guestId);
+        guest.setName(guestName);
+
+        Reservation reservation = new Reservation();
+        reservation.setReservation_id(reservationId);
+        reservation.setParty_size(2);
+        reservation.setScheduled_date(scheduledDate);
+        reservation.setTotal_spend(new BigDecimal(totalSpend));
+        reservation.setGuest(guest);
+
+        return reservation;
+    }
+}
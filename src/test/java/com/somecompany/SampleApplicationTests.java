@@ -3,7 +3,7 @@ package com.somecompany;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "reservation.log.enabled=false")
 class SampleApplicationTests {
 
     @Test